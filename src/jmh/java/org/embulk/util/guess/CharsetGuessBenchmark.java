@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.ConfigDiff;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link CharsetGuess}, and {@link CharsetDetector} behind it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharsetGuessBenchmark {
+    @Param({"4096", "65536", "1048576"})
+    public int sampleBytes;
+
+    @Param({"UTF-8", "Shift_JIS", "EUC-JP", "windows-1252", "UTF-16LE"})
+    public String charset;
+
+    @Setup
+    public void setUp() {
+        this.sample = SyntheticCorpus.text(this.charset, "\r\n", 8, this.sampleBytes, SEED);
+        this.buffer = new FakeBufferImpl(this.sample);
+        this.charsetGuess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        this.detector = new CharsetDetector();
+    }
+
+    @Benchmark
+    public ConfigDiff guess() {
+        return this.charsetGuess.guess(this.buffer);
+    }
+
+    @Benchmark
+    public String detect() {
+        final CharsetMatch match = this.detector.setText(this.sample).detect();
+        return (match == null) ? null : match.getName();
+    }
+
+    private static final long SEED = 48L;
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+
+    private byte[] sample;
+    private FakeBufferImpl buffer;
+    private CharsetGuess charsetGuess;
+    private CharsetDetector detector;
+}
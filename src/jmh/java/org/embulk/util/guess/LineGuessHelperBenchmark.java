@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link LineGuessHelper} with {@code parser.charset} configured, not to measure {@link CharsetGuess}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineGuessHelperBenchmark {
+    @Param({"4096", "65536", "1048576"})
+    public int sampleBytes;
+
+    @Param({"4", "32"})
+    public int columns;
+
+    @Param({"UTF-8", "Shift_JIS", "UTF-16LE"})
+    public String charset;
+
+    @Setup
+    public void setUp() {
+        this.buffer = new FakeBufferImpl(SyntheticCorpus.text(this.charset, "\r\n", this.columns, this.sampleBytes, SEED));
+
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", this.charset);
+        parserConfig.set("newline", "CRLF");
+        this.config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        this.config.setNested("parser", parserConfig);
+        this.lineGuessHelper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+    }
+
+    @Benchmark
+    public List<String> toLines() {
+        return this.lineGuessHelper.toLines(this.config, this.buffer);
+    }
+
+    @Benchmark
+    public LineIndex toLineIndex() {
+        return this.lineGuessHelper.toLineIndex(this.config, this.buffer);
+    }
+
+    private static final long SEED = 48L;
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+
+    private FakeBufferImpl buffer;
+    private ConfigSource config;
+    private LineGuessHelper lineGuessHelper;
+}
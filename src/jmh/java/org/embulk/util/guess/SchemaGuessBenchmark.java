@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.embulk.config.ConfigDiff;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link SchemaGuess} with records whose columns are typed in turn: long, double, boolean, timestamp, and string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaGuessBenchmark {
+    @Param({"100", "1000"})
+    public int rows;
+
+    @Param({"4", "32"})
+    public int columns;
+
+    @Setup
+    public void setUp() {
+        this.columnNames = SyntheticCorpus.columnNames(this.columns);
+        this.records = SyntheticCorpus.records(this.rows, this.columns, SEED);
+        this.schemaGuess = SchemaGuess.of(CONFIG_MAPPER_FACTORY);
+    }
+
+    @Benchmark
+    public List<ConfigDiff> fromListRecords() {
+        return this.schemaGuess.fromListRecords(this.columnNames, this.records);
+    }
+
+    private static final long SEED = 48L;
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+
+    private List<String> columnNames;
+    private List<List<Object>> records;
+    private SchemaGuess schemaGuess;
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates deterministic synthetic corpora for benchmarks.
+ *
+ * <p>The same arguments always generate the same corpus, so that results are comparable across commits.
+ */
+final class SyntheticCorpus {
+    private SyntheticCorpus() {
+        // No instantiation.
+    }
+
+    /**
+     * Generates CSV-like text of {@code bytes} bytes in the charset, which may end in the middle of a line.
+     */
+    static byte[] text(final String charsetName, final String newline, final int columns, final int bytes, final long seed) {
+        final Charset charset = Charset.forName(charsetName);
+        final List<String> words = wordsOf(charsetName);
+        final Random random = new Random(seed);
+
+        final StringBuilder builder = new StringBuilder();
+        byte[] encoded = new byte[0];
+        while (encoded.length < bytes) {
+            for (int line = 0; line < 64; line++) {
+                for (int column = 0; column < columns; column++) {
+                    if (column > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(words.get(random.nextInt(words.size())));
+                }
+                builder.append(newline);
+            }
+            encoded = builder.toString().getBytes(charset);
+        }
+        return Arrays.copyOf(encoded, bytes);
+    }
+
+    /**
+     * Generates records whose columns are typed in turn: long, double, boolean, timestamp, and string.
+     */
+    static List<List<Object>> records(final int rows, final int columns, final long seed) {
+        final Random random = new Random(seed);
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
+        final ArrayList<List<Object>> records = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            final ArrayList<Object> record = new ArrayList<>(columns);
+            for (int column = 0; column < columns; column++) {
+                switch (column % 5) {
+                    case 0:
+                        record.add(Long.toString(random.nextInt(1000000)));
+                        break;
+                    case 1:
+                        record.add(Double.toString(random.nextDouble() * 1000));
+                        break;
+                    case 2:
+                        record.add(random.nextBoolean() ? "true" : "false");
+                        break;
+                    case 3:
+                        record.add(formatter.format(dateTimeOf(random)));
+                        break;
+                    default:
+                        record.add(ASCII_WORDS.get(random.nextInt(ASCII_WORDS.size())));
+                        break;
+                }
+            }
+            records.add(Collections.unmodifiableList(record));
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    static List<String> columnNames(final int columns) {
+        final ArrayList<String> names = new ArrayList<>(columns);
+        for (int column = 0; column < columns; column++) {
+            names.add("c" + column);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Generates timestamps in a format of Ruby's {@code strftime} among {@link #TIMESTAMP_FORMATS}.
+     */
+    static List<Object> timestamps(final String rubyFormat, final int count, final long seed) {
+        final String pattern = TIMESTAMP_FORMATS.get(rubyFormat);
+        if (pattern == null) {
+            throw new IllegalArgumentException("Unknown timestamp format: " + rubyFormat);
+        }
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern, Locale.ENGLISH);
+        final Random random = new Random(seed);
+        final ArrayList<Object> timestamps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            timestamps.add(formatter.format(dateTimeOf(random).atOffset(ZoneOffset.ofHours(random.nextInt(25) - 12))));
+        }
+        return Collections.unmodifiableList(timestamps);
+    }
+
+    private static LocalDateTime dateTimeOf(final Random random) {
+        return LocalDateTime.of(2000, 1, 1, 0, 0).plusSeconds(random.nextInt(30 * 365 * 24 * 60 * 60)).withNano(random.nextInt(1000) * 1000000);
+    }
+
+    private static List<String> wordsOf(final String charsetName) {
+        switch (charsetName) {
+            case "Shift_JIS":
+            case "EUC-JP":
+            case "ISO-2022-JP":
+            case "UTF-8":
+            case "UTF-16LE":
+            case "UTF-16BE":
+                return JAPANESE_WORDS;
+            case "windows-1252":
+            case "ISO-8859-1":
+                return LATIN_WORDS;
+            default:
+                return ASCII_WORDS;
+        }
+    }
+
+    private static Map<String, String> timestampFormats() {
+        final LinkedHashMap<String, String> formats = new LinkedHashMap<>();
+        formats.put("%Y-%m-%d %H:%M:%S", "yyyy-MM-dd HH:mm:ss");
+        formats.put("%Y-%m-%d %H:%M:%S.%L", "yyyy-MM-dd HH:mm:ss.SSS");
+        formats.put("%Y/%m/%d", "yyyy/MM/dd");
+        formats.put("%m/%d/%Y", "MM/dd/yyyy");
+        formats.put("%Y-%m-%dT%H:%M:%S%:z", "yyyy-MM-dd'T'HH:mm:ssxxx");
+        formats.put("%d/%b/%Y:%H:%M:%S %z", "dd/MMM/yyyy:HH:mm:ss xx");
+        formats.put("%a, %d %b %Y %H:%M:%S %z", "EEE, dd MMM yyyy HH:mm:ss xx");
+        return Collections.unmodifiableMap(formats);
+    }
+
+    // Ruby's strftime formats to be guessed, and the patterns of java.time to generate them.
+    static final Map<String, String> TIMESTAMP_FORMATS = timestampFormats();
+
+    private static final List<String> ASCII_WORDS = Collections.unmodifiableList(Arrays.asList(
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliett",
+            "12345", "-678", "3.14", "true", "false", "2014-01-01", "null", "\"quoted, text\""));
+
+    private static final List<String> JAPANESE_WORDS = Collections.unmodifiableList(Arrays.asList(
+            "いろは", "にほへと", "ちりぬるを", "わかよたれそ", "つねならむ", "東京都", "大阪府", "漢字",
+            "カタカナ", "abc", "12345", "3.14", "true"));
+
+    private static final List<String> LATIN_WORDS = Collections.unmodifiableList(Arrays.asList(
+            "café", "naïve", "façade", "über", "señor", "smörgåsbord", "crème", "brûlée", "déjà", "vu",
+            "abc", "12345", "3.14", "true"));
+}
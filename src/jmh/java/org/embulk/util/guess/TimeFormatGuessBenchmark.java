@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link TimeFormatGuess} with timestamps in each format of {@link SyntheticCorpus#TIMESTAMP_FORMATS}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeFormatGuessBenchmark {
+    @Param({
+            "%Y-%m-%d %H:%M:%S",
+            "%Y-%m-%d %H:%M:%S.%L",
+            "%Y/%m/%d",
+            "%m/%d/%Y",
+            "%Y-%m-%dT%H:%M:%S%:z",
+            "%d/%b/%Y:%H:%M:%S %z",
+            "%a, %d %b %Y %H:%M:%S %z"
+    })
+    public String format;
+
+    @Param({"10", "1000"})
+    public int count;
+
+    @Setup
+    public void setUp() {
+        this.timestamps = SyntheticCorpus.timestamps(this.format, this.count, SEED);
+        this.timeFormatGuess = TimeFormatGuess.of();
+    }
+
+    @Benchmark
+    public String guess() {
+        return this.timeFormatGuess.guess(this.timestamps);
+    }
+
+    private static final long SEED = 48L;
+
+    private List<Object> timestamps;
+    private TimeFormatGuess timeFormatGuess;
+}
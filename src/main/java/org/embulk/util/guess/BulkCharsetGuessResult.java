@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.embulk.config.ConfigDiff;
+
+/**
+ * The result of {@link CharsetGuess#guessAll(List)}.
+ */
+public final class BulkCharsetGuessResult {
+    BulkCharsetGuessResult(final List<ConfigDiff> results, final String consensus, final int fullGuessCount) {
+        this.results = Collections.unmodifiableList(results);
+        this.consensus = consensus;
+        this.fullGuessCount = fullGuessCount;
+    }
+
+    /**
+     * Returns {@link org.embulk.config.ConfigDiff} guessed for each sample, in the same form as {@link CharsetGuess#guess}.
+     *
+     * @return {@link org.embulk.config.ConfigDiff}s in the order of the samples
+     */
+    public List<ConfigDiff> getResults() {
+        return this.results;
+    }
+
+    /**
+     * Returns the character set which the samples have agreed on.
+     *
+     * @return the name of the character set agreed, or empty if no consensus has been formed
+     */
+    public Optional<String> getConsensus() {
+        return Optional.ofNullable(this.consensus);
+    }
+
+    /**
+     * Returns the number of samples which have been guessed fully, not only verified with the consensus.
+     *
+     * @return the number of samples guessed fully
+     */
+    public int getFullGuessCount() {
+        return this.fullGuessCount;
+    }
+
+    private final List<ConfigDiff> results;
+    private final String consensus;
+    private final int fullGuessCount;
+}
@@ -1,7 +1,17 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess, and
- * - changing its class visibility to package-private.
+ * - moving its Java package to org.embulk.util.guess,
+ * - changing its class visibility to package-private,
+ * - collecting the statistics for all the recognizers in CharsetInputStats and CharsetNGramStats at once,
+ * - stopping detect() early once no other recognizer can outmatch the best match so far,
+ * - reusing its buffers across detections through reset() to be pooled in CharsetDetectorPool,
+ * - detecting from a range of a byte array without copying it by setText(byte[], int, int),
+ * - sampling evenly placed windows from a large input within a byte budget by setSampling(int, int),
+ * - replacing the whole set of enabled recognizers at once by setDetectableCharsets(String...),
+ * - detecting from an input appended in chunks by startText() and appendText(byte[], int, int),
+ * - detecting from an input split into chunks by setText(List), as if they were concatenated,
+ * - detecting from windows taken apart from a larger input by setWindows(List), sharing the budget among them, and
+ * - reporting the time and the confidence of each recognizer in detect() to CharsetGuessListener by setListener().
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -17,6 +27,7 @@ package org.embulk.util.guess;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -94,14 +105,39 @@ class CharsetDetector {
      * @stable ICU 3.4
      */
     public CharsetDetector setText(byte [] in) {
+        return setText(in, 0, in.length);
+    }
+
+    /**
+     * Set the input text (byte) data whose charset is to be detected.
+     * The input is not copied, and must not be modified until the detection finishes.
+     *
+     * @param in the byte array which contains the input text of unknown encoding
+     * @param offset the offset of the input text in the byte array
+     * @param length the length of the input text
+     *
+     * @return This CharsetDetector
+     */
+    public CharsetDetector setText(byte [] in, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > in.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + in.length);
+        }
         fRawInput  = in;
-        fRawLength = in.length;
-        
+        fRawOffset = offset;
+        fRawLength = length;
+        fRawLimit  = length;
+        fStreaming = false;
+        fPacked    = false;
+
         return this;
     }
     
     private static final int kBufSize = 8000;
 
+    // An input up to 64 KiB, which covers the default sample of Embulk, is checked as a whole.
+    private static final int kSampleBudget = 65536;
+    private static final int kSampleWindows = 8;
+
     /**
      * Set the input text (byte) data whose charset is to be detected.
      *  <p>
@@ -121,9 +157,13 @@ class CharsetDetector {
     public CharsetDetector setText(InputStream in) throws IOException {
         fInputStream = in;
         fInputStream.mark(kBufSize);
-        fRawInput = new byte[kBufSize];   // Always make a new buffer because the
+        if (fRawBuffer == null) {
+            fRawBuffer = new byte[kBufSize];
+        }
+        fRawInput = fRawBuffer;           // Never reuse fRawInput because the
                                           //   previous one may have come from the caller,
                                           //   in which case we can't touch it.
+        fRawOffset = 0;
         fRawLength = 0;
         int remainingLength = kBufSize;
         while (remainingLength > 0 ) {
@@ -136,11 +176,281 @@ class CharsetDetector {
             remainingLength -= bytesRead;
         }
         fInputStream.reset();
+        Arrays.fill(fRawInput, fRawLength, kBufSize, (byte) 0);  // As clean as a new buffer.
+        fRawLimit = kBufSize;
+        fStreaming = false;
+        fPacked = false;
         
         return this;
     }
 
+    /**
+     * Start setting the input text (byte) data in chunks by appendText().
+     *
+     * The chunks are detected as if they were concatenated into a single input, and set by
+     * setText() with setSampling(budget, 1). The input is never concatenated though. The
+     * encoding schemes are counted chunk by chunk, carrying over a character split between
+     * chunks, and only the first 8000 bytes are kept for the recognizers which check only
+     * the beginning of the input. detect() and detectAll() can be called between chunks.
+     *
+     * When the input filter is enabled, markup is stripped only from the first 8000 bytes.
+     *
+     * @return This CharsetDetector
+     */
+    public CharsetDetector startText() {
+        if (fRawBuffer == null) {
+            fRawBuffer = new byte[kBufSize];
+        }
+        fInputStream = null;
+        fRawInput = fRawBuffer;
+        fRawOffset = 0;
+        fRawLength = 0;
+        fRawLimit = 0;
+        fStreaming = true;
+        fPacked = false;
+        fStreamLength = 0;
+        fStats.resetRaw(0);
+        return this;
+    }
+
+    /**
+     * Append a chunk of the input text (byte) data after startText().
+     * The chunk is not kept after this call except for the beginning of the input.
+     *
+     * @param in the byte array which contains the chunk
+     * @param offset the offset of the chunk in the byte array
+     * @param length the length of the chunk
+     *
+     * @return <code>true</code> if more input text can still change the detection, or <code>false</code>
+     *         if the sampling budget is used up and more input text is just ignored.
+     * @throws IllegalStateException when startText() has not been called.
+     */
+    public boolean appendText(byte [] in, int offset, int length) {
+        if (!fStreaming) {
+            throw new IllegalStateException("appendText() is called without startText().");
+        }
+        if (offset < 0 || length < 0 || offset > in.length - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + in.length);
+        }
+
+        int headLength = Math.min(length, kBufSize - fRawLength);
+        if (headLength > 0) {
+            System.arraycopy(in, offset, fRawInput, fRawLength, headLength);
+            fRawLength += headLength;
+            fRawLimit = fRawLength;
+        }
+
+        int countedLength = Math.min(length, fSampleBudget - fStreamLength);
+        if (countedLength > 0) {
+            // The raw input is addressed from its beginning, which is before the chunk.
+            fStats.continueRawWindow(in, offset - fStreamLength, fStreamLength, countedLength);
+            fStreamLength += countedLength;
+        }
+        return fStreamLength < fSampleBudget;
+    }
+
+    /**
+     * Set the input text (byte) data split into chunks, as if the chunks were concatenated and set by setText().
+     *
+     * The chunks are never concatenated. An input within the sampling budget is counted chunk by chunk
+     * as appendText() does. From a larger input, only the windows which setText() would sample are
+     * copied into a buffer owned by this CharsetDetector, so that the detection is the same as setText()
+     * with the concatenated input.
+     *
+     * When the input filter has been enabled, the sampled bytes are copied into the buffer also from an input
+     * within the budget, so that markup is stripped from the joined input as setText() does, including
+     * a tag split between chunks. appendText() would strip markup only from the first 8000 bytes.
+     *
+     * @param chunks the chunks of the input text, whose positions and limits are not changed
+     * @return This CharsetDetector
+     */
+    CharsetDetector setText(List<ByteBuffer> chunks) {
+        long length = 0;
+        for (ByteBuffer chunk : chunks) {
+            length += chunk.remaining();
+        }
+
+        if (fStripTags && (length <= fSampleBudget || fSampleWindows == 1)) {
+            startPacking(1, (int) Math.min(length, fSampleBudget));
+            packWindow(0, chunks, 0, (int) Math.min(length, fSampleBudget));
+            return this;
+        }
+        if (length <= fSampleBudget || fSampleWindows == 1) {
+            startText();
+            for (ByteBuffer chunk : chunks) {
+                if (!appendBuffer(chunk)) {
+                    break;
+                }
+            }
+            return this;
+        }
+
+        // The same windows as computeWindows() chooses from the concatenated input.
+        int windowLength = fSampleBudget / fSampleWindows;
+        startPacking(fSampleWindows, windowLength);
+        for (int k = 0; k < fSampleWindows; k++) {
+            packWindow(k, chunks, (length - windowLength) * k / (fSampleWindows - 1), windowLength);
+        }
+        return this;
+    }
+
+    /**
+     * Set the input text (byte) data in windows taken apart from a larger input, such as windows
+     * mapped from a file.
+     *
+     * Unlike setText(List), the windows are not concatenated into a single input to be sampled.
+     * Windows larger than the sampling budget in total are sampled from the beginning of each window,
+     * taking an equal share of the budget, so that every window is counted. A window other than the
+     * first is realigned as the windows sampled by setText() are. If the windows are more than the
+     * budget allows, windows spread evenly over them are sampled.
+     *
+     * @param windows the windows of the input text, whose positions and limits are not changed
+     * @return This CharsetDetector
+     */
+    CharsetDetector setWindows(List<ByteBuffer> windows) {
+        long length = 0;
+        for (ByteBuffer window : windows) {
+            length += window.remaining();
+        }
+        if (windows.size() <= 1 || length <= fSampleBudget || fSampleWindows == 1) {
+            return setText(windows);
+        }
+
+        // Each window takes at least one byte also of the filtered input.
+        int count = Math.min(windows.size(), Math.min(fSampleBudget, kBufSize));
+        int share = fSampleBudget / count;
+        startPacking(count, share);
+        for (int k = 0; k < count; k++) {
+            ByteBuffer window = windows.get((int) ((long) (windows.size() - 1) * k / (count - 1)));
+            packWindow(k, Collections.singletonList(window), 0, Math.min(share, window.remaining()));
+        }
+        return this;
+    }
+
+    /*
+     *  appendBuffer - append a chunk in ByteBuffer, which may not be backed by an array, such as
+     *                 a file mapped into memory.
+     */
+    private boolean appendBuffer(ByteBuffer chunk) {
+        if (chunk.hasArray()) {
+            return appendText(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }
+        if (fCopyBuffer == null) {
+            fCopyBuffer = new byte[kBufSize];
+        }
+        ByteBuffer source = chunk.duplicate();
+        while (source.hasRemaining()) {
+            int length = Math.min(source.remaining(), fCopyBuffer.length);
+            source.get(fCopyBuffer, 0, length);
+            if (!appendText(fCopyBuffer, 0, length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     *  startPacking - start packing windows copied from the input into fPackedBuffer.
+     *               Each window takes up to 3 more bytes to keep its alignment to UTF-32.
+     */
+    private void startPacking(int windowCount, int windowLength) {
+        int capacity = windowCount * (windowLength + 3);
+        if (fPackedBuffer == null || fPackedBuffer.length < capacity) {
+            fPackedBuffer = new byte[capacity];
+        }
+        if (fWindowOffsets == null || fWindowOffsets.length < windowCount) {
+            fWindowOffsets = new int[windowCount];
+            fWindowLengths = new int[windowCount];
+        }
+        fInputStream = null;
+        fRawInput = fPackedBuffer;
+        fRawOffset = 0;
+        fRawLength = 0;
+        fRawLimit = 0;
+        fStreaming = false;
+        fPacked = true;
+        fWindowCount = windowCount;
+    }
+
+    /*
+     *  packWindow - copy the window of the length from the start in the concatenated chunks into
+     *               fPackedBuffer as the k-th window.
+     *
+     *               The window is packed at a position congruent with the start modulo 4 so that
+     *               UTF-32 is counted in the same alignment as in the concatenated input. A window
+     *               other than the first is realigned as computeWindows() does.
+     */
+    private void packWindow(int k, List<ByteBuffer> chunks, long start, int length) {
+        int position = fRawLength + (int) ((start - fRawLength) & 3);
+        int copied = 0;
+        long chunkStart = 0;
+        for (ByteBuffer chunk : chunks) {
+            long chunkEnd = chunkStart + chunk.remaining();
+            if (chunkEnd > start + copied && copied < length) {
+                int from = (int) (start + copied - chunkStart);
+                int count = (int) Math.min(length - copied, chunkEnd - (start + copied));
+                ByteBuffer source = chunk.duplicate();
+                source.position(chunk.position() + from);
+                source.get(fPackedBuffer, position + copied, count);
+                copied += count;
+            }
+            chunkStart = chunkEnd;
+        }
+
+        int windowStart = position;
+        int windowEnd = position + copied;
+        if (k > 0) {
+            for (int i = windowStart; i < windowEnd; i++) {
+                if ((fPackedBuffer[i] & 0xff) < 0x30) {
+                    windowStart = i + 1;
+                    break;
+                }
+            }
+        }
+        fWindowOffsets[k] = windowStart;
+        fWindowLengths[k] = windowEnd - windowStart;
+        fRawLength = windowEnd;
+        fRawLimit = windowEnd;
+    }
+
   
+    /**
+     * Clear the input text and the declared encoding to reuse this CharsetDetector for another input.
+     * The settings of input filtering, detectable charsets and the recognizer order are kept.
+     *
+     * CharsetMatch objects returned before may not be used after reset(), as they may refer to
+     * the buffer owned by this CharsetDetector, which would be overwritten by the next setText().
+     *
+     * @return This CharsetDetector
+     */
+    CharsetDetector reset() {
+        fDeclaredEncoding = null;
+        fRawInput = null;
+        fRawOffset = 0;
+        fRawLength = 0;
+        fRawLimit = 0;
+        fInputStream = null;
+        fStreaming = false;
+        fPacked = false;
+        fListener = null;
+        return this;
+    }
+
+    /**
+     * Set the listener to be reported the time spent and the confidence of each recognizer in detect().
+     * It is cleared by reset() so that a pooled detector does not report to the listener of another caller.
+     *
+     * Only the recognizers which detect() actually runs are reported. The recognizers skipped once
+     * no other recognizer can outmatch the best match so far are not reported. detectAll() is not reported.
+     *
+     * @param listener the listener, or <code>null</code> not to report.
+     * @return This CharsetDetector
+     */
+    CharsetDetector setListener(CharsetGuessListener listener) {
+        fListener = listener;
+        return this;
+    }
+
     /**
      * Return the charset that best matches the supplied input data.
      * 
@@ -161,19 +471,149 @@ class CharsetDetector {
      * @stable ICU 3.4
      */
     public CharsetMatch detect() {
-//   TODO:  A better implementation would be to copy the detect loop from
-//          detectAll(), and cut it short as soon as a match with a high confidence
-//          is found.  This is something to be done later, after things are otherwise
-//          working.
-        CharsetMatch matches[] = detectAll();
-        
-        if (matches == null || matches.length == 0) {
-            return null;
+        // System.nanoTime() is called only when a listener is set.
+        CharsetGuessListener listener = fListener;
+        long startNanos = (listener != null) ? System.nanoTime() : 0L;
+        MungeInput();  // Strip html markup, collect byte stats.
+        if (listener != null) {
+            listener.onInputCollected(System.nanoTime() - startNanos, fSampledLength);
         }
-        
-        return matches[0];
-     }
-    
+
+        // The result must be the same as detectAll()[0]. detectAll() sorts the matches stably,
+        // and then reverses them. The match from the recognizer later in ALL_CS_RECOGNIZERS
+        // is therefore the best among the matches of the same confidence.
+        int[] order = (fRecognizerOrder != null) ? fRecognizerOrder : DEFAULT_RECOGNIZER_ORDER;
+        CharsetMatch bestMatch = null;
+        int bestIndex = -1;
+        for (int k = 0; k < order.length; k++) {
+            if (bestMatch != null && !canOutmatch(order, k, bestMatch.getConfidence(), bestIndex)) {
+                break;
+            }
+            int i = order[k];
+            if (!isActive(i)) {
+                continue;
+            }
+            CharsetRecognizer recognizer = ALL_CS_RECOGNIZERS.get(i).recognizer;
+            if (listener != null) {
+                startNanos = System.nanoTime();
+            }
+            CharsetMatch m = recognizer.match(this);
+            if (listener != null) {
+                listener.onRecognizerMatched(recognizer.getName(), System.nanoTime() - startNanos,
+                        recognizer.getBytesExamined(this), (m != null) ? m.getConfidence() : 0);
+            }
+            if (m != null && (bestMatch == null || isBetter(m.getConfidence(), i, bestMatch.getConfidence(), bestIndex))) {
+                bestMatch = m;
+                bestIndex = i;
+            }
+        }
+        if (listener != null) {
+            listener.onDetected((bestMatch != null) ? bestMatch.getName() : null, (bestMatch != null) ? bestMatch.getConfidence() : 0);
+        }
+        return bestMatch;
+    }
+
+    /*
+     * Test whether any of the recognizers from order[start] may return a better match than
+     * the best match so far.
+     */
+    private boolean canOutmatch(int[] order, int start, int bestConfidence, int bestIndex) {
+        for (int k = start; k < order.length; k++) {
+            int i = order[k];
+            if (isActive(i) && isBetter(ALL_CS_RECOGNIZERS.get(i).recognizer.getMaxConfidence(), i, bestConfidence, bestIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBetter(int confidence, int index, int bestConfidence, int bestIndex) {
+        return confidence > bestConfidence || (confidence == bestConfidence && index > bestIndex);
+    }
+
+    private boolean isActive(int index) {
+        return (fEnabledRecognizers != null) ? fEnabledRecognizers[index] : ALL_CS_RECOGNIZERS.get(index).isDefaultEnabled;
+    }
+
+    /**
+     * Set the order in which detect() tries the recognizers.
+     *
+     * The order never changes the result of detect(), but detect() gets faster when
+     * the recognizers for the charsets seen most often are tried first, for example
+     * in the order of the hit rates observed in the past. The recognizers for the given
+     * charsets are tried first in the given order, and then the others in the default order.
+     *
+     * Only the recognizers which can never outmatch the best match so far are skipped.
+     * A match of the same confidence from a recognizer later in the default order wins,
+     * and UTF-16, UTF-32, the multi-byte and the ISO-2022 recognizers can all return 100.
+     * Even a match of 100 from UTF-8 therefore skips only the single-byte recognizers,
+     * which cost the most as they parse the input by themselves. The others score
+     * from CharsetInputStats, or from the first 30 bytes for UTF-16.
+     *
+     * @param encodings the names of charset encodings, which must be included in the names
+     *                  returned by {@link #getAllDetectableCharsets()}.
+     * @return A reference to this <code>CharsetDetector</code>.
+     * @throws IllegalArgumentException when a name of charset encoding is not supported.
+     */
+    public CharsetDetector setRecognizerOrder(String... encodings) {
+        int[] order = new int[ALL_CS_RECOGNIZERS.size()];
+        boolean[] ordered = new boolean[ALL_CS_RECOGNIZERS.size()];
+        int count = 0;
+        for (String encoding : encodings) {
+            int index = -1;
+            for (int i = 0; i < ALL_CS_RECOGNIZERS.size(); i++) {
+                if (ALL_CS_RECOGNIZERS.get(i).recognizer.getName().equals(encoding)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid encoding: " + "\"" + encoding + "\"");
+            }
+            if (!ordered[index]) {
+                ordered[index] = true;
+                order[count++] = index;
+            }
+        }
+        for (int i = 0; i < ALL_CS_RECOGNIZERS.size(); i++) {
+            if (!ordered[i]) {
+                order[count++] = i;
+            }
+        }
+        fRecognizerOrder = order;
+        return this;
+    }
+
+    /**
+     * Enable only the recognizers for the given charsets, and disable all the others.
+     *
+     * Unlike {@link #setDetectableCharset(String, boolean)}, it replaces the whole set at once,
+     * including the recognizers disabled by default.
+     *
+     * @param encodings the names of charset encodings, which must be included in the names
+     *                  returned by {@link #getAllDetectableCharsets()}.
+     * @return A reference to this <code>CharsetDetector</code>.
+     * @throws IllegalArgumentException when a name of charset encoding is not supported.
+     */
+    CharsetDetector setDetectableCharsets(String... encodings) {
+        boolean[] enabled = new boolean[ALL_CS_RECOGNIZERS.size()];
+        for (String encoding : encodings) {
+            int index = -1;
+            for (int i = 0; i < ALL_CS_RECOGNIZERS.size(); i++) {
+                if (ALL_CS_RECOGNIZERS.get(i).recognizer.getName().equals(encoding)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid encoding: " + "\"" + encoding + "\"");
+            }
+            enabled[index] = true;
+        }
+        fEnabledRecognizers = enabled;
+        return this;
+    }
+
     /**
      *  Return an array of all charsets that appear to be plausible
      *  matches with the input data.  The array is ordered with the
@@ -346,6 +786,72 @@ class CharsetDetector {
         
         return previous;
     }
+
+    /**
+     * Set the budget of bytes to sample from a large input, and the number of windows to
+     * spread the budget over.
+     *
+     * An input within the budget is checked as a whole. From an input larger than the
+     * budget, windows of the same length are sampled at even intervals from its head to
+     * its tail, and all the recognizers check the same windows. The filtered input for
+     * the single-byte recognizers takes an equal share of 8000 bytes from each window.
+     *
+     * A window other than the first starts next to a byte less than 0x30, which is never
+     * a trailing byte in any multi-byte encoding scheme, so that a window does not start
+     * in the middle of a character.
+     *
+     * @param budget the number of bytes to sample at most.
+     * @param windows the number of windows.
+     * @return A reference to this <code>CharsetDetector</code>.
+     * @throws IllegalArgumentException when the budget is less than the number of windows.
+     */
+    public CharsetDetector setSampling(int budget, int windows) {
+        if (windows < 1 || budget < windows) {
+            throw new IllegalArgumentException("Invalid sampling: budget " + budget + " in " + windows + " windows");
+        }
+        fSampleBudget = budget;
+        fSampleWindows = windows;
+        return this;
+    }
+
+    /*
+     *  computeWindows - choose the windows to sample from the raw input.
+     *               Their offsets are relative to fRawOffset.
+     */
+    private void computeWindows() {
+        if (fPacked) {
+            return;  // The windows have been packed by setText(List<ByteBuffer>).
+        }
+        if (fWindowOffsets == null || fWindowOffsets.length < fSampleWindows) {
+            fWindowOffsets = new int[fSampleWindows];
+            fWindowLengths = new int[fSampleWindows];
+        }
+
+        if (fRawLength <= fSampleBudget || fSampleWindows == 1 || fStreaming) {
+            fWindowOffsets[0] = 0;
+            fWindowLengths[0] = Math.min(fRawLength, fSampleBudget);
+            fWindowCount = 1;
+            return;
+        }
+
+        // The intervals are wider than the windows as fRawLength > fSampleBudget. They never overlap.
+        int windowLength = fSampleBudget / fSampleWindows;
+        for (int k = 0; k < fSampleWindows; k++) {
+            int start = (int) ((long) (fRawLength - windowLength) * k / (fSampleWindows - 1));
+            int end = start + windowLength;
+            if (k > 0) {
+                for (int i = start; i < end; i++) {
+                    if ((fRawInput[fRawOffset + i] & 0xff) < 0x30) {
+                        start = i + 1;
+                        break;
+                    }
+                }
+            }
+            fWindowOffsets[k] = start;
+            fWindowLengths[k] = end - start;
+        }
+        fWindowCount = fSampleWindows;
+    }
     
     /*
      *  MungeInput - after getting a set of raw input data to be analyzed, preprocess
@@ -359,6 +865,8 @@ class CharsetDetector {
         int      openTags = 0;
         int      badTags  = 0;
         
+        computeWindows();
+
         //
         //  html / xml markup stripping.
         //     quick and dirty, not 100% accurate, but hopefully good enough, statistically.
@@ -366,23 +874,26 @@ class CharsetDetector {
         //     Count how many total '<' and illegal (nested) '<' occur, so we can make some
         //     guess as to whether the input was actually marked up at all.
         if (fStripTags) {
-            for (srci = 0; srci < fRawLength && dsti < fInputBytes.length; srci++) {
-                b = fRawInput[srci];
-                if (b == (byte)'<') {
-                    if (inMarkup) {
-                        badTags++;
+            for (int k = 0; k < fWindowCount; k++) {
+                int windowEnd = fWindowOffsets[k] + fWindowLengths[k];
+                for (srci = fWindowOffsets[k]; srci < windowEnd && dsti < fInputBytes.length; srci++) {
+                    b = fRawInput[fRawOffset + srci];
+                    if (b == (byte)'<') {
+                        if (inMarkup) {
+                            badTags++;
+                        }
+                        inMarkup = true;
+                        openTags++;
                     }
-                    inMarkup = true;
-                    openTags++;
-                }
                 
-                if (! inMarkup) {
-                    fInputBytes[dsti++] = b;
-                }
+                    if (! inMarkup) {
+                        fInputBytes[dsti++] = b;
+                    }
                 
-                if (b == (byte)'>') {
-                    inMarkup = false;
-                }        
+                    if (b == (byte)'>') {
+                        inMarkup = false;
+                    }        
+                }
             }
             
             fInputLen = dsti;
@@ -395,34 +906,37 @@ class CharsetDetector {
         //
         if (openTags<5 || openTags/5 < badTags || 
                 (fInputLen < 100 && fRawLength>600)) {
-            int limit = fRawLength;
-            
-            if (limit > kBufSize) {
-                limit = kBufSize;
-            }
+            int share = kBufSize / fWindowCount;  // Each window takes an equal share.
             
-            for (srci=0; srci<limit; srci++) {
-                fInputBytes[srci] = fRawInput[srci];
+            dsti = 0;
+            for (int k = 0; k < fWindowCount; k++) {
+                int limit = Math.min(fWindowLengths[k], share);
+                System.arraycopy(fRawInput, fRawOffset + fWindowOffsets[k], fInputBytes, dsti, limit);
+                dsti += limit;
             }
-            fInputLen = srci;
+            fInputLen = dsti;
         }
         
         //
-        // Tally up the byte occurence statistics.
+        // Tally up the byte occurence statistics, and the statistics of encoding schemes.
         //   These are available for use by the various detectors.
+        //   They are collected in a single pass for each of the filtered input and the raw input
+        //   so that the detectors do not have to scan the input by themselves one by one.
         //
-        Arrays.fill(fByteStats, (short)0);
-        for (srci=0; srci<fInputLen; srci++) {
-            int val = fInputBytes[srci] & 0x00ff;
-            fByteStats[val]++;
+        fStats.collectFiltered(fInputBytes, fInputLen);
+        fC1Bytes = fStats.hasC1Bytes;
+        fNGramStats.reset();
+        if (fStreaming) {
+            // The raw input has been counted by appendText(), but its BOM.
+            fStats.checkUtf8Bom(fRawInput, fRawOffset, fWindowLengths[0]);
+            fSampledLength = fStreamLength;
+            return;
         }
-        
-        fC1Bytes = false;
-        for (int i = 0x80; i <= 0x9F; i += 1) {
-            if (fByteStats[i] != 0) {
-                fC1Bytes = true;
-                break;
-            }
+        fStats.resetRaw(fRawLength);
+        fSampledLength = 0;
+        for (int k = 0; k < fWindowCount; k++) {
+            fStats.collectRawWindow(fRawInput, fRawOffset, fWindowOffsets[k], fWindowLengths[k]);
+            fSampledLength += fWindowLengths[k];
         }
      }
 
@@ -436,9 +950,11 @@ class CharsetDetector {
     
     int         fInputLen;          // Length of the byte data in fInputBytes.
     
-    short       fByteStats[] =      // byte frequency statistics for the input text.
-                   new short[256];  //   Value is percent, not absolute.
-                                    //   Value is rounded up, so zero really means zero occurences.
+    CharsetInputStats fStats =      // Byte frequency statistics for the input text, and
+                   new CharsetInputStats();  //   counts of characters in each encoding scheme.
+
+    CharsetNGramStats fNGramStats = // Counts of n-grams in the input text, collected on demand.
+                   new CharsetNGramStats();
     
     boolean     fC1Bytes =          // True if any bytes in the range 0x80 - 0x9F are in the input;
                    false;
@@ -450,10 +966,26 @@ class CharsetDetector {
                                         //  If user gave us a byte array, this is it.
                                         //  If user gave us a stream, it's read to a 
                                         //  buffer here.
+    int                  fRawOffset;    // Offset of data in fRawInput array.
     int                  fRawLength;    // Length of data in fRawInput array.
+    int                  fRawLimit;     // Length of bytes readable in fRawInput from fRawOffset.
+                                        //  It is longer than fRawLength for a stream, with zeros
+                                        //  following the data as the original ICU4J.
+    int                  fSampledLength; // Length of the raw input counted in fStats, summed up over the windows.
     
     InputStream          fInputStream;  // User's input stream, or null if the user
                                         //   gave us a byte array.
+
+    private byte[]       fRawBuffer;    // Buffer owned by this detector to read an input stream into.
+                                        //   Allocated on demand, and reused across setText() calls.
+
+    private boolean      fStreaming;    // True if the input is appended in chunks. See startText().
+    private boolean      fPacked;       // True if the windows are packed in fPackedBuffer. See setText(List<ByteBuffer>).
+    private byte[]       fPackedBuffer; // Buffer owned by this detector to pack the windows into.
+    private byte[]       fCopyBuffer;   // Buffer owned by this detector to copy a chunk not backed by an array.
+    private int          fStreamLength; // Length of the chunked input counted in fStats so far.
+
+    private CharsetGuessListener fListener; // Reported the time spent in detect() if not null. See setListener().
      
     //
     //  Stuff private to CharsetDetector
@@ -465,6 +997,18 @@ class CharsetDetector {
                                                 // been changed from the default. The array index is
                                                 // corresponding to ALL_RECOGNIZER. See setDetectableCharset().
 
+    private int          fSampleBudget =        // The budget of bytes to sample from a large input,
+                           kSampleBudget;       //   spread over fSampleWindows windows. See setSampling().
+    private int          fSampleWindows =
+                           kSampleWindows;
+
+    private int[]        fWindowOffsets;        // Offsets and lengths of the windows sampled from the raw input,
+    private int[]        fWindowLengths;        //   relative to fRawOffset. See computeWindows().
+    private int          fWindowCount;
+
+    private int[]        fRecognizerOrder;      // If not null, the order of indexes to ALL_CS_RECOGNIZERS
+                                                // in which detect() tries the recognizers. See setRecognizerOrder().
+
     private static class CSRecognizerInfo {
         CharsetRecognizer recognizer;
         boolean isDefaultEnabled;
@@ -480,6 +1024,13 @@ class CharsetDetector {
      */
     private static final List<CSRecognizerInfo> ALL_CS_RECOGNIZERS;
 
+    /*
+     * The order of indexes to ALL_CS_RECOGNIZERS in which detect() tries the recognizers by default.
+     * It is just the order of ALL_CS_RECOGNIZERS, which assumes nothing about the inputs.
+     * setRecognizerOrder() replaces it with an order known to fit the inputs better.
+     */
+    private static final int[] DEFAULT_RECOGNIZER_ORDER;
+
     static {
         List<CSRecognizerInfo> list = new ArrayList<CSRecognizerInfo>();
 
@@ -517,6 +1068,11 @@ class CharsetDetector {
         list.add(new CSRecognizerInfo(new CharsetRecog_sbcs.CharsetRecog_IBM420_ar_ltr(), false));
 
         ALL_CS_RECOGNIZERS = Collections.unmodifiableList(list);
+
+        DEFAULT_RECOGNIZER_ORDER = new int[ALL_CS_RECOGNIZERS.size()];
+        for (int i = 0; i < DEFAULT_RECOGNIZER_ORDER.length; i++) {
+            DEFAULT_RECOGNIZER_ORDER[i] = i;
+        }
     }
 
     /**
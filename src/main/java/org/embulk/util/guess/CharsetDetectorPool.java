@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pools {@link CharsetDetector}s to detect charsets from many threads at once without allocating their buffers every time.
+ *
+ * <p>The charset recognizers and their tables are immutable, and shared by all the detectors. A detector itself holds
+ * only scratch buffers for a detection, and it is confined to the thread which has acquired it until it is released.
+ *
+ * <p>It does not use {@link ThreadLocal} so that detectors are not left in threads which outlive the class loader of this library.
+ */
+final class CharsetDetectorPool {
+    CharsetDetectorPool(final int capacity, final String[] detectableCharsets, final String[] recognizerOrder) {
+        this.detectors = new ArrayBlockingQueue<>(capacity);
+        this.detectableCharsets = detectableCharsets;
+        this.recognizerOrder = recognizerOrder;
+    }
+
+    CharsetDetectorPool(final int capacity, final String[] detectableCharsets) {
+        this(capacity, detectableCharsets, null);
+    }
+
+    CharsetDetectorPool(final int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a pool of detectors which run only the recognizers for the given charsets.
+     *
+     * @param detectableCharsets  the names of the recognizers to run, or {@code null} to run the default recognizers
+     */
+    CharsetDetectorPool(final String[] detectableCharsets) {
+        this(detectableCharsets, null);
+    }
+
+    /**
+     * Creates a pool of detectors which run only the recognizers for the given charsets, in the given order.
+     *
+     * @param detectableCharsets  the names of the recognizers to run, or {@code null} to run the default recognizers
+     * @param recognizerOrder  the names of the recognizers to try first in the order, or {@code null} for the default order
+     */
+    CharsetDetectorPool(final String[] detectableCharsets, final String[] recognizerOrder) {
+        this(Runtime.getRuntime().availableProcessors(), detectableCharsets, recognizerOrder);
+    }
+
+    CharsetDetectorPool() {
+        this(Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Creates another pool of detectors which run the same recognizers as this pool, but try them in the given order.
+     *
+     * @param recognizerOrder  the names of the recognizers to try first in the order
+     * @return the new pool, which does not share the detectors with this pool
+     */
+    CharsetDetectorPool withRecognizerOrder(final String[] recognizerOrder) {
+        return new CharsetDetectorPool(this.detectableCharsets, recognizerOrder);
+    }
+
+    /**
+     * Acquires a detector from the pool, or creates a new one if the pool is empty.
+     *
+     * @return a detector confined to the caller until it is released
+     */
+    CharsetDetector acquire() {
+        final CharsetDetector detector = this.detectors.poll();
+        if (detector != null) {
+            return detector;
+        }
+        final CharsetDetector newDetector = new CharsetDetector();
+        if (this.detectableCharsets != null) {
+            newDetector.setDetectableCharsets(this.detectableCharsets);
+        }
+        if (this.recognizerOrder != null) {
+            newDetector.setRecognizerOrder(this.recognizerOrder);
+        }
+        return newDetector;
+    }
+
+    /**
+     * Returns a detector to the pool. It is just dropped if the pool is full.
+     *
+     * <p>{@link CharsetMatch}es from the detector may not be used after it is released.
+     *
+     * @param detector  the detector acquired from this pool
+     */
+    void release(final CharsetDetector detector) {
+        this.detectors.offer(detector.reset());
+    }
+
+    private final ArrayBlockingQueue<CharsetDetector> detectors;
+    private final String[] detectableCharsets;
+    private final String[] recognizerOrder;
+}
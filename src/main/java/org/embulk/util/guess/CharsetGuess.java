@@ -16,6 +16,15 @@
 
 package org.embulk.util.guess;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import org.embulk.config.ConfigDiff;
 import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
@@ -28,43 +37,317 @@ import org.embulk.util.config.ConfigMapperFactory;
  * @see <a href="https://github.com/embulk/embulk/blob/v0.10.19/embulk-core/src/main/ruby/embulk/guess/charset.rb">charset.rb</a>
  */
 public final class CharsetGuess {
-    private CharsetGuess(final ConfigMapperFactory configMapperFactory) {
+    private CharsetGuess(
+            final ConfigMapperFactory configMapperFactory,
+            final CharsetDetectorPool detectorPool,
+            final String profile,
+            final CharsetGuessListener listener) {
         this.configMapperFactory = configMapperFactory;
+        this.detectorPool = detectorPool;
+        this.profile = profile;
+        this.listener = listener;
     }
 
     public static CharsetGuess of(final ConfigMapperFactory configMapperFactory) {
-        return new CharsetGuess(configMapperFactory);
+        return new CharsetGuess(configMapperFactory, DETECTOR_POOL, "", null);
+    }
+
+    /**
+     * Creates a guess which detects only the given candidate character sets.
+     *
+     * <p>Only the recognizers which can guess one of the candidates are run, for example, {@code "MS932"} runs only the
+     * recognizer for {@code "Shift_JIS"}, and {@code "UTF-8"} runs the recognizers for {@code "UTF-8"} and
+     * {@code "ISO-8859-1"}. It costs much less than detecting among all the character sets when the inputs are known
+     * to be in a few character sets. A candidate is a name guessed by {@link #guess(Buffer)}, or a name of the
+     * recognizers.
+     *
+     * <p>The recognizers are tried in the order of the candidates as {@link #withRecognizerOrder(List)} does, so that the
+     * candidates seen most often should come first. It still guesses {@code "UTF-8"} when no candidate matches confidently,
+     * even if {@code "UTF-8"} is not a candidate.
+     *
+     * @param configMapperFactory  the factory to create {@link org.embulk.config.ConfigDiff}
+     * @param candidateCharsets  the names of the candidate character sets, such as {@code "UTF-8"} and {@code "MS932"}
+     * @return {@link CharsetGuess} which detects only the candidates
+     * @throws IllegalArgumentException  if a candidate is not a character set which can be guessed
+     */
+    public static CharsetGuess of(final ConfigMapperFactory configMapperFactory, final Collection<String> candidateCharsets) {
+        final String[] recognizerArray = recognizersOf(candidateCharsets);
+        return new CharsetGuess(
+                configMapperFactory, new CharsetDetectorPool(recognizerArray, recognizerArray), String.join(",", recognizerArray), null);
+    }
+
+    /**
+     * Creates a guess which tries the recognizers for the given character sets first, in the given order.
+     *
+     * <p>The order never changes the guess, but the guess gets faster when the character sets seen most often come first,
+     * for example in the order of the hit rates observed in the past. Only the recognizers which can never outmatch the
+     * best match so far are skipped. The recognizers for UTF-16, UTF-32, the multi-byte, and the ISO-2022 character sets
+     * can also match with the highest confidence, so even a clean {@code "UTF-8"} skips only the recognizers for the
+     * single-byte character sets, which cost the most.
+     *
+     * <p>The detectors are not shared with this guess. Create it once to be reused. The listener is kept.
+     *
+     * @param charsetNames  the names of the character sets, such as {@code "UTF-8"} and {@code "MS932"}, in the order to try
+     * @return {@link CharsetGuess} which tries the recognizers in the order
+     * @throws IllegalArgumentException  if a name is not a character set which can be guessed
+     */
+    public CharsetGuess withRecognizerOrder(final List<String> charsetNames) {
+        return new CharsetGuess(this.configMapperFactory, this.detectorPool.withRecognizerOrder(recognizersOf(charsetNames)), this.profile, this.listener);
+    }
+
+    /**
+     * Creates a guess which reports how each character set is detected to the listener, in addition to this guess.
+     *
+     * <p>The detectors are shared with this guess. The guesses of this {@link CharsetGuess} itself are not reported.
+     * The time is measured only in the guesses with a listener.
+     *
+     * @param listener  the listener to be reported, which must be thread-safe if it guesses from many threads at once
+     * @return {@link CharsetGuess} which reports to the listener
+     */
+    public CharsetGuess withListener(final CharsetGuessListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener is null.");
+        }
+        return new CharsetGuess(this.configMapperFactory, this.detectorPool, this.profile, listener);
     }
 
     /**
      * Guesses a character set from {@link org.embulk.spi.Buffer}.
      *
+     * <p>It is thread-safe. Detectors are pooled, and reused across calls from many threads.
+     *
      * @param sample  the byte sequence to be guessed
      * @return {@link org.embulk.config.ConfigDiff} guessed
      */
     public ConfigDiff guess(final Buffer sample) {
-        final CharsetDetector detector = new CharsetDetector();
+        return this.newConfigDiff(this.guessCharsetName(sample));
+    }
 
-        final int sampleLength = sample.limit();
-        final byte[] sampleArray = new byte[sampleLength];
-        sample.getBytes(0, sampleArray, 0, sampleLength);
+    /**
+     * Guesses a character set from the head of a file, which is mapped into memory instead of being copied into the heap.
+     *
+     * <p>The guess is the same as {@link #guess(Buffer)} for the head up to the window. Only the windows to be sampled from
+     * a head larger than 64 KiB are copied into the heap.
+     *
+     * @param file  the file to be guessed
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public ConfigDiff guess(final Path file, final int windowBytes) throws IOException {
+        return this.newConfigDiff(this.guessCharsetName(MappedSample.map(file, windowBytes)));
+    }
+
+    /**
+     * Guesses a character set from the head of a file as {@link #guess(Path, int)} does, through an open channel.
+     *
+     * <p>The head is mapped from the beginning of the file regardless of the position of the channel. The channel is not closed.
+     *
+     * @param channel  the channel of the file to be guessed
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public ConfigDiff guess(final FileChannel channel, final int windowBytes) throws IOException {
+        return this.newConfigDiff(this.guessCharsetName(MappedSample.map(channel, windowBytes)));
+    }
+
+    /**
+     * Guesses character sets from many samples of similar files, such as files in the same directory.
+     *
+     * <p>The first samples are guessed one by one as {@link #guess(Buffer)} does, until the last three
+     * of them agree on a character set. The rest of the samples are then only verified with the recognizers for the
+     * agreed character set, which is the consensus. A sample which the recognizers do not match confidently is guessed
+     * fully, and it does not change the consensus.
+     *
+     * <p>It is thread-safe.
+     *
+     * @param samples  the byte sequences to be guessed
+     * @return {@link BulkCharsetGuessResult} which contains {@link org.embulk.config.ConfigDiff} guessed for each sample,
+     *     and the consensus
+     */
+    public BulkCharsetGuessResult guessAll(final List<? extends Buffer> samples) {
+        final ArrayList<ConfigDiff> results = new ArrayList<>(samples.size());
+        String consensus = null;
+        CharsetDetectorPool verifierPool = null;
+        String lastGuessed = null;
+        int agreements = 0;
+        int fullGuesses = 0;
 
-        detector.setText(sampleArray);
+        for (final Buffer sample : samples) {
+            if (verifierPool != null && consensus.equals(this.detectConfidently(verifierPool, sample))) {
+                results.add(this.newConfigDiff(consensus));
+                continue;
+            }
 
-        final CharsetMatch bestMatch = detector.detect();
+            final String charsetName = orUtf8(this.detectConfidently(this.detectorPool, sample));
+            results.add(this.newConfigDiff(charsetName));
+            fullGuesses++;
 
-        final ConfigDiff charset = this.configMapperFactory.newConfigDiff();
-        if (bestMatch.getConfidence() < 50) {
-            charset.set("charset", "UTF-8");
-        } else {
-            charset.set("charset", convertPredefined(bestMatch.getName()));
+            if (consensus == null) {
+                agreements = charsetName.equals(lastGuessed) ? agreements + 1 : 1;
+                lastGuessed = charsetName;
+                if (agreements >= CONSENSUS_AGREEMENTS) {
+                    consensus = charsetName;
+                    final List<String> recognizers = recognizersOf(consensus);
+                    if (!recognizers.isEmpty()) {  // Never verified if the consensus is a name only in matches, such as "windows-1252".
+                        verifierPool = new CharsetDetectorPool(1, recognizers.toArray(new String[0]));
+                    }
+                }
+            }
+        }
+        return new BulkCharsetGuessResult(results, consensus, fullGuesses);
+    }
+
+    /**
+     * Starts guessing a character set from a sample which arrives in {@link org.embulk.spi.Buffer} chunks.
+     *
+     * <p>The chunks are never concatenated. See {@link IncrementalCharsetGuess} for details.
+     *
+     * @return {@link IncrementalCharsetGuess} to be fed with the chunks, which must be finished or closed
+     */
+    public IncrementalCharsetGuess startIncremental() {
+        return new IncrementalCharsetGuess(this, this.detectorPool, this.listener);
+    }
+
+    /**
+     * Returns the names of the recognizers which it runs, or an empty string if it runs the default recognizers.
+     */
+    String getProfile() {
+        return this.profile;
+    }
+
+    /**
+     * Guesses a character set from {@link org.embulk.spi.Buffer} as {@link #guess(Buffer)} does, but returns just its name.
+     */
+    String guessCharsetName(final Buffer sample) {
+        return orUtf8(this.detectConfidently(this.detectorPool, sample));
+    }
+
+    /**
+     * Guesses a character set from a sample in {@link org.embulk.spi.Buffer} chunks as if they were concatenated, but
+     * returns just its name.
+     *
+     * <p>The chunks are never concatenated. The guess is the same as {@link #guess(Buffer)} for the concatenated sample,
+     * also for a sample larger than 64 KiB, from which only the windows to be sampled are copied.
+     */
+    String guessCharsetNameOfChunks(final List<? extends Buffer> chunks) {
+        if (chunks.size() == 1) {
+            return this.guessCharsetName(chunks.get(0));
+        }
+        final ArrayList<ByteBuffer> wrapped = new ArrayList<>(chunks.size());
+        for (final Buffer chunk : chunks) {
+            wrapped.add(ByteBuffer.wrap(GuessUtil.arrayOf(chunk), chunk.offset(), chunk.limit()));
         }
+        final CharsetDetector detector = this.detectorPool.acquire().setListener(this.listener);
+        try {
+            return orUtf8(charsetNameOf(detector.setText(wrapped).detect()));
+        } finally {
+            this.detectorPool.release(detector);
+        }
+    }
+
+    /**
+     * Guesses a character set from bytes mapped as {@link #guess(Path, int)} does, but returns just its name.
+     *
+     * <p>Only the windows to be sampled are copied into the heap.
+     */
+    String guessCharsetName(final ByteBuffer mapped) {
+        final CharsetDetector detector = this.detectorPool.acquire().setListener(this.listener);
+        try {
+            return orUtf8(charsetNameOf(detector.setText(Collections.singletonList(mapped)).detect()));
+        } finally {
+            this.detectorPool.release(detector);
+        }
+    }
+
+    /**
+     * Guesses a character set from windows mapped from a file.
+     *
+     * <p>Windows larger than 64 KiB in total are sampled from the beginning of each window, taking an equal share of the
+     * 64 KiB, so that a character set which appears only in later windows can also be guessed.
+     */
+    String guessCharsetName(final List<ByteBuffer> windows) {
+        final CharsetDetector detector = this.detectorPool.acquire().setListener(this.listener);
+        try {
+            return orUtf8(charsetNameOf(detector.setWindows(windows).detect()));
+        } finally {
+            this.detectorPool.release(detector);
+        }
+    }
+
+    ConfigDiff toConfigDiff(final CharsetMatch bestMatch) {
+        return this.newConfigDiff(orUtf8(charsetNameOf(bestMatch)));
+    }
+
+    private ConfigDiff newConfigDiff(final String charsetName) {
+        final ConfigDiff charset = this.configMapperFactory.newConfigDiff();
+        charset.set("charset", charsetName);
 
         final ConfigDiff result = this.configMapperFactory.newConfigDiff();
         result.setNested("parser", charset);
         return result;
     }
 
+    /**
+     * Detects a character set with a detector from the pool.
+     *
+     * @return the name of the character set detected, or {@code null} if no recognizer matches confidently
+     */
+    private String detectConfidently(final CharsetDetectorPool detectorPool, final Buffer sample) {
+        final CharsetDetector detector = detectorPool.acquire().setListener(this.listener);
+        try {
+            detector.setText(GuessUtil.arrayOf(sample), sample.offset(), sample.limit());
+            return charsetNameOf(detector.detect());
+        } finally {
+            detectorPool.release(detector);
+        }
+    }
+
+    private static String charsetNameOf(final CharsetMatch bestMatch) {
+        // No recognizer may match when limited to the candidates.
+        if (bestMatch == null || bestMatch.getConfidence() < 50) {
+            return null;
+        }
+        return convertPredefined(bestMatch.getName());
+    }
+
+    private static String orUtf8(final String charsetName) {
+        return (charsetName != null) ? charsetName : "UTF-8";
+    }
+
+    /**
+     * Lists the names of the recognizers which can guess any of the character sets, in the order of the character sets.
+     *
+     * @throws IllegalArgumentException  if a character set cannot be guessed
+     */
+    private static String[] recognizersOf(final Collection<String> charsetNames) {
+        final LinkedHashSet<String> recognizers = new LinkedHashSet<>();
+        for (final String charsetName : charsetNames) {
+            final List<String> recognizersOfCharset = recognizersOf(charsetName);
+            if (recognizersOfCharset.isEmpty()) {
+                throw new IllegalArgumentException("Charset \"" + charsetName + "\" cannot be guessed.");
+            }
+            recognizers.addAll(recognizersOfCharset);
+        }
+        return recognizers.toArray(new String[0]);
+    }
+
+    /**
+     * Lists the names of the recognizers which can guess the character set.
+     */
+    private static List<String> recognizersOf(final String charsetName) {
+        final ArrayList<String> recognizers = new ArrayList<>();
+        for (final String recognizer : CharsetDetector.getAllDetectableCharsets()) {
+            if (recognizer.equals(charsetName) || convertPredefined(recognizer).equals(charsetName)) {
+                recognizers.add(recognizer);
+            }
+        }
+        return recognizers;
+    }
+
     private static String convertPredefined(final String before) {
         switch (before) {
             // ISO-8859-1 means ASCII which is a subset of UTF-8 in most of cases
@@ -82,5 +365,13 @@ public final class CharsetGuess {
         }
     }
 
+    // The number of samples in a row to agree on a character set to be the consensus in guessAll().
+    private static final int CONSENSUS_AGREEMENTS = 3;
+
+    private static final CharsetDetectorPool DETECTOR_POOL = new CharsetDetectorPool();
+
     private final ConfigMapperFactory configMapperFactory;
+    private final CharsetDetectorPool detectorPool;
+    private final String profile;
+    private final CharsetGuessListener listener;  // null not to report
 }
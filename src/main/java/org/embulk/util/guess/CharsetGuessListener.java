@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+/**
+ * Receives how a character set is detected in {@link CharsetGuess}, to measure the cost and the confidence of each recognizer.
+ *
+ * <p>It is set by {@link CharsetGuess#withListener(CharsetGuessListener)}. A detection reports
+ * {@link #onInputCollected(long, int)} once, {@link #onRecognizerMatched(String, long, int, int)} for each recognizer run,
+ * and then {@link #onDetected(String, int)} once, all in the thread which guesses.
+ *
+ * <p>A detection stops running the rest of the recognizers once none of them can outmatch the best match so far.
+ * The recognizers not run are not reported.
+ *
+ * <p>It must be thread-safe if the {@link CharsetGuess} guesses from many threads at once. The methods do nothing by default.
+ */
+public interface CharsetGuessListener {
+    /**
+     * Reports the input sampled, and the statistics collected from the input for all the recognizers.
+     *
+     * @param elapsedNanos  the time spent to sample the input, and to collect the statistics, in nanoseconds
+     * @param bytesExamined  the number of bytes sampled from the input
+     */
+    default void onInputCollected(final long elapsedNanos, final int bytesExamined) {
+    }
+
+    /**
+     * Reports a recognizer run.
+     *
+     * @param recognizerName  the name of the recognizer, such as {@code "Shift_JIS"} and {@code "ISO-8859-1"}
+     * @param elapsedNanos  the time spent in the recognizer, in nanoseconds
+     * @param bytesExamined  the number of bytes which the confidence is based on
+     * @param confidence  the confidence of the recognizer from 1 to 100, or 0 if it does not match
+     */
+    default void onRecognizerMatched(final String recognizerName, final long elapsedNanos, final int bytesExamined, final int confidence) {
+    }
+
+    /**
+     * Reports the best match of a detection.
+     *
+     * <p>The match is the raw result of the recognizers. {@link CharsetGuess} converts its name, for example, from
+     * {@code "Shift_JIS"} to {@code "MS932"}, and falls back to {@code "UTF-8"} if the confidence is less than 50.
+     *
+     * @param charsetName  the name of the character set matched the best, such as {@code "Shift_JIS"} and {@code "windows-1252"},
+     *     or {@code null} if no recognizer matches
+     * @param confidence  the confidence of the best match, or 0 if no recognizer matches
+     */
+    default void onDetected(final String charsetName, final int confidence) {
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.Arrays;
+
+/**
+ * Collects the statistics of input bytes which the charset recognizers score from.
+ *
+ * <p>The original ICU4J recognizers scan the input by themselves one by one. It walks the input only once instead,
+ * and runs the encoding schemes of UTF-8, UTF-32, Shift_JIS, Big5, EUC and GB18030 side by side as small state
+ * machines. The recognizers then compute their confidences from the counts collected here.
+ *
+ * <p>ASCII runs are skipped eight bytes at a time while all the state machines are between characters, as an ASCII
+ * byte is a single-byte character in all of them. Only UTF-32 needs to look into the words there.
+ *
+ * <p>The counts must be the same as the original recognizers would count. Note especially that a byte which breaks
+ * a multi-byte sequence is consumed as a part of the broken sequence, and that a sequence cut at the end of the input
+ * is not counted at all, as the original recognizers do.
+ *
+ * <p>The common characters of the multi-byte encodings are looked up in bitmaps over the 16-bit code space, instead of
+ * the binary searches over the sorted tables.
+ */
+final class CharsetInputStats {
+    CharsetInputStats() {
+        this.byteStats = new short[256];
+        this.utf8 = new UnicodeCounts();
+        this.utf32be = new UnicodeCounts();
+        this.utf32le = new UnicodeCounts();
+        this.sjis = new MultiByteCounts(SJIS_COMMON_CHARS);
+        this.big5 = new MultiByteCounts(BIG5_COMMON_CHARS);
+        this.eucJp = new MultiByteCounts(EUC_JP_COMMON_CHARS);
+        this.eucKr = new MultiByteCounts(EUC_KR_COMMON_CHARS);
+        this.gb18030 = new MultiByteCounts(GB18030_COMMON_CHARS);
+        this.iso2022jp = new EscapeCounts(CharsetRecog_2022.CharsetRecog_2022JP.escapeSequences);
+        this.iso2022kr = new EscapeCounts(CharsetRecog_2022.CharsetRecog_2022KR.escapeSequences);
+        this.iso2022cn = new EscapeCounts(CharsetRecog_2022.CharsetRecog_2022CN.escapeSequences);
+    }
+
+    /**
+     * Counts bytes, and ISO-2022 escape sequences, in the input filtered by {@code CharsetDetector}.
+     */
+    void collectFiltered(final byte[] input, final int length) {
+        Arrays.fill(this.byteStats, (short) 0);
+        this.iso2022jp.reset();
+        this.iso2022kr.reset();
+        this.iso2022cn.reset();
+        this.shifts = 0;
+
+        for (int i = 0; i < length; i++) {
+            final byte b = input[i];
+            this.byteStats[b & 0xff]++;
+            if (b == 0x1b) {
+                // Bytes in an escape sequence after ESC are never ESC, SO, nor SI. They can be walked through one
+                // by one without skipping over the sequence, unlike the original ICU4J recognizers.
+                this.iso2022jp.count(input, i, length);
+                this.iso2022kr.count(input, i, length);
+                this.iso2022cn.count(input, i, length);
+            } else if (b == 0x0e || b == 0x0f) {
+                this.shifts++;
+            }
+        }
+
+        this.hasC1Bytes = false;
+        for (int i = 0x80; i <= 0x9f; i++) {
+            if (this.byteStats[i] != 0) {
+                this.hasC1Bytes = true;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Counts characters in the raw input for each encoding scheme.
+     */
+    void collectRaw(final byte[] input, final int offset, final int length) {
+        this.resetRaw(length);
+        this.collectRawWindow(input, offset, 0, length);
+    }
+
+    /**
+     * Resets the counts of characters in the raw input to collect them from windows of the input.
+     *
+     * <p>The raw input can also be counted chunk by chunk from its beginning by {@link #continueRawWindow} right after it.
+     */
+    void resetRaw(final int length) {
+        this.rawLength = length;
+        this.resetStates(0);
+        this.utf8.reset();
+        this.utf32be.reset();
+        this.utf32le.reset();
+        this.sjis.reset();
+        this.big5.reset();
+        this.eucJp.reset();
+        this.eucKr.reset();
+        this.gb18030.reset();
+    }
+
+    /**
+     * Adds the counts of characters in a window of the raw input for each encoding scheme.
+     *
+     * <p>The window is counted as if it were an independent input. A character cut at the end of the window is not
+     * counted. UTF-32 characters are counted at the boundaries of four bytes from the beginning of the input, not of
+     * the window.
+     *
+     * @param input  the array which contains the raw input
+     * @param offset  the offset of the raw input in the array
+     * @param start  the start of the window relative to the offset
+     * @param length  the length of the window
+     */
+    void collectRawWindow(final byte[] input, final int offset, final int start, final int length) {
+        if (start == 0) {
+            this.checkUtf8Bom(input, offset, length);
+        }
+        this.resetStates(start);
+        this.continueRawWindow(input, offset, start, length);
+    }
+
+    /**
+     * Adds the counts of characters in the raw input which continues right after the last window.
+     *
+     * <p>A character split between the last window and this continuation is counted as a whole, as if they were
+     * a single window.
+     *
+     * @param input  the array which contains the continuation
+     * @param offset  the offset of the raw input in the array, which may be negative when the array does not contain its beginning
+     * @param start  the start of the continuation relative to the offset, which is the end of the last window
+     * @param length  the length of the continuation
+     */
+    void continueRawWindow(final byte[] input, final int offset, final int start, final int length) {
+        // The states are loaded into local variables for the loop, and stored back after the loop.
+        int utf8Trail = this.utf8Trail;
+        int utf32Word = this.utf32Word;
+        final int utf32Start = this.utf32Start;
+        int sjisLead = this.sjisLead;
+        int big5Lead = this.big5Lead;
+        int eucLead = this.eucLead;
+        int eucRemaining = this.eucRemaining;
+        int eucValue = this.eucValue;
+        int gbState = this.gbState;
+        int gbValue = this.gbValue;
+        int gbThird = this.gbThird;
+
+        final int end = start + length;
+
+        for (int i = start; i < end; i++) {
+            if ((i & 3) == 0 && utf8Trail == 0 && sjisLead < 0 && big5Lead < 0 && eucLead < 0 && gbState == 0) {
+                final int asciiEnd = this.countAsciiWords(input, offset, i, end);
+                if (asciiEnd > i) {
+                    utf32Word = (int) GuessUtil.readLong(input, offset + asciiEnd - 8);  // The last four bytes counted.
+                    i = asciiEnd;
+                    if (i >= end) {
+                        break;
+                    }
+                }
+            }
+
+            final int b = input[offset + i] & 0xff;
+
+            // UTF-8
+            if (utf8Trail > 0) {
+                if ((b & 0xc0) != 0x80) {
+                    this.utf8.invalid++;
+                    utf8Trail = 0;
+                } else if (--utf8Trail == 0) {
+                    this.utf8.valid++;
+                }
+            } else if (b >= 0x80) {
+                if ((b & 0xe0) == 0xc0) {
+                    utf8Trail = 1;
+                } else if ((b & 0xf0) == 0xe0) {
+                    utf8Trail = 2;
+                } else if ((b & 0xf8) == 0xf0) {
+                    utf8Trail = 3;
+                } else {
+                    this.utf8.invalid++;
+                }
+            }
+
+            // UTF-32
+            utf32Word = (utf32Word << 8) | b;
+            if ((i & 3) == 3 && i >= utf32Start) {
+                countUtf32(this.utf32be, utf32Word, i == 3);
+                countUtf32(this.utf32le, Integer.reverseBytes(utf32Word), i == 3);
+            }
+
+            // Shift_JIS
+            if (sjisLead < 0) {
+                if (b <= 0x7f || (b > 0xa0 && b <= 0xdf)) {
+                    this.sjis.countSingle();
+                } else {
+                    sjisLead = b;
+                }
+            } else {
+                this.sjis.countMulti((sjisLead << 8) | b, b < 0x40);
+                sjisLead = -1;
+            }
+
+            // Big5
+            if (big5Lead < 0) {
+                if (b <= 0x7f || b == 0xff) {
+                    this.big5.countSingle();
+                } else {
+                    big5Lead = b;
+                }
+            } else {
+                this.big5.countMulti((big5Lead << 8) | b, b < 0x40 || b == 0x7f || b == 0xff);
+                big5Lead = -1;
+            }
+
+            // EUC-JP and EUC-KR
+            if (eucLead < 0) {
+                if (b <= 0x8d) {
+                    this.eucJp.countSingle();
+                    this.eucKr.countSingle();
+                } else {
+                    eucLead = b;
+                    eucValue = b;
+                    eucRemaining = (b == 0x8f) ? 2 : 1;  // Code set 3 is three bytes in total.
+                }
+            } else {
+                eucValue = (eucValue << 8) | b;
+                if (--eucRemaining == 0) {
+                    final boolean error;
+                    if (eucLead == 0x8f) {
+                        error = b < 0xa1;  // Only the third byte is checked in code set 3.
+                    } else if ((eucLead >= 0xa1 && eucLead <= 0xfe) || eucLead == 0x8e) {
+                        error = b < 0xa1;
+                    } else {
+                        error = false;
+                    }
+                    this.eucJp.countMulti(eucValue, error);
+                    this.eucKr.countMulti(eucValue, error);
+                    eucLead = -1;
+                }
+            }
+
+            // GB18030
+            if (gbState == 0) {
+                if (b <= 0x80) {
+                    this.gb18030.countSingle();
+                } else {
+                    gbValue = b;
+                    gbState = 1;
+                }
+            } else if (gbState == 1) {
+                final int lead = gbValue;
+                gbValue = (gbValue << 8) | b;
+                if (lead == 0xff || (b >= 0x40 && b <= 0xfe)) {
+                    this.gb18030.countMulti(gbValue, false);
+                    gbState = 0;
+                } else if (b >= 0x30 && b <= 0x39) {
+                    gbState = 2;  // Maybe a four-byte character.
+                } else {
+                    this.gb18030.countMulti(gbValue, true);
+                    gbState = 0;
+                }
+            } else if (gbState == 2) {
+                if (b >= 0x81 && b <= 0xfe) {
+                    gbThird = b;
+                    gbState = 3;
+                } else {
+                    this.gb18030.countMulti(gbValue, true);
+                    gbState = 0;
+                }
+            } else {
+                if (b >= 0x30 && b <= 0x39) {
+                    this.gb18030.countMulti((gbValue << 16) | (gbThird << 8) | b, false);
+                } else {
+                    this.gb18030.countMulti(gbValue, true);
+                }
+                gbState = 0;
+            }
+        }
+
+        this.utf8Trail = utf8Trail;
+        this.utf32Word = utf32Word;
+        this.sjisLead = sjisLead;
+        this.big5Lead = big5Lead;
+        this.eucLead = eucLead;
+        this.eucRemaining = eucRemaining;
+        this.eucValue = eucValue;
+        this.gbState = gbState;
+        this.gbValue = gbValue;
+        this.gbThird = gbThird;
+    }
+
+    private void resetStates(final int start) {
+        this.utf8Trail = 0;
+        this.utf32Word = 0;
+        this.utf32Start = start + 3;
+        this.sjisLead = -1;
+        this.big5Lead = -1;
+        this.eucLead = -1;
+        this.eucRemaining = 0;
+        this.eucValue = 0;
+        this.gbState = 0;
+        this.gbValue = 0;
+        this.gbThird = 0;
+    }
+
+    /**
+     * Checks the UTF-8 BOM at the beginning of the raw input.
+     */
+    void checkUtf8Bom(final byte[] input, final int offset, final int length) {
+        this.utf8.hasBom = length >= 3
+                && (input[offset] & 0xff) == 0xef && (input[offset + 1] & 0xff) == 0xbb && (input[offset + 2] & 0xff) == 0xbf;
+    }
+
+    /**
+     * Counts ASCII bytes eight by eight from {@code start}, which must be at a boundary of UTF-32 characters.
+     * The words are read straight from the array by {@link GuessUtil#readLong(byte[], int)}.
+     *
+     * @return the index next to the ASCII words counted
+     */
+    private int countAsciiWords(final byte[] input, final int offset, final int start, final int end) {
+        int i = start;
+        while (i + 8 <= end) {
+            final long word = GuessUtil.readLong(input, offset + i);
+            if ((word & 0x8080808080808080L) != 0) {
+                break;
+            }
+            final int high = (int) (word >>> 32);
+            final int low = (int) word;
+            countUtf32(this.utf32be, high, i == 0);
+            countUtf32(this.utf32le, Integer.reverseBytes(high), i == 0);
+            countUtf32(this.utf32be, low, false);
+            countUtf32(this.utf32le, Integer.reverseBytes(low), false);
+            i += 8;
+        }
+        final int count = i - start;
+        if (count > 0) {
+            this.sjis.countSingles(count);
+            this.big5.countSingles(count);
+            this.eucJp.countSingles(count);
+            this.eucKr.countSingles(count);
+            this.gb18030.countSingles(count);
+        }
+        return i;
+    }
+
+    private static void countUtf32(final UnicodeCounts counts, final int ch, final boolean first) {
+        if (first && ch == 0x0000feff) {
+            counts.hasBom = true;
+        }
+        if (ch < 0 || ch >= 0x10ffff || (ch >= 0xd800 && ch <= 0xdfff)) {
+            counts.invalid++;
+        } else {
+            counts.valid++;
+        }
+    }
+
+    /**
+     * Counts valid and invalid sequences in an encoding form of Unicode.
+     */
+    static final class UnicodeCounts {
+        void reset() {
+            this.valid = 0;
+            this.invalid = 0;
+            this.hasBom = false;
+        }
+
+        int valid;
+        int invalid;
+        boolean hasBom;
+    }
+
+    /**
+     * Converts a sorted table of 16-bit common characters into a bitmap over the 16-bit code space.
+     */
+    static long[] bitmapOf(final int[] commonChars) {
+        final long[] bits = new long[(0xffff + 1) / Long.SIZE];
+        for (final int commonChar : commonChars) {
+            if (commonChar < 0 || commonChar > 0xffff) {
+                throw new IllegalArgumentException("Common character out of 16 bits: " + commonChar);
+            }
+            bits[commonChar >>> 6] |= 1L << commonChar;
+        }
+        return bits;
+    }
+
+    static boolean isCommonChar(final long[] commonCharBits, final int charValue) {
+        // 4-byte characters of GB18030 are out of the bitmap, and never common characters.
+        return (charValue >>> 16) == 0 && (commonCharBits[charValue >>> 6] & (1L << charValue)) != 0;
+    }
+
+    /**
+     * Counts characters in a multi-byte encoding scheme as {@code CharsetRecog_mbcs#match} does.
+     */
+    static final class MultiByteCounts {
+        MultiByteCounts(final long[] commonCharBits) {
+            this.commonCharBits = commonCharBits;
+        }
+
+        void reset() {
+            this.totalCharCount = 0;
+            this.doubleByteCharCount = 0;
+            this.commonCharCount = 0;
+            this.badCharCount = 0;
+            this.bailedOut = false;
+        }
+
+        void countSingle() {
+            if (!this.bailedOut) {
+                this.totalCharCount++;
+            }
+        }
+
+        void countSingles(final int count) {
+            if (!this.bailedOut) {
+                this.totalCharCount += count;
+            }
+        }
+
+        void countMulti(final int charValue, final boolean error) {
+            if (this.bailedOut) {
+                return;
+            }
+            this.totalCharCount++;
+            if (error) {
+                this.badCharCount++;
+            } else {
+                this.doubleByteCharCount++;
+                // NOTE: This assumes that there are no 4-byte common chars.
+                if (this.commonCharBits != null && isCommonChar(this.commonCharBits, charValue)) {
+                    this.commonCharCount++;
+                }
+            }
+            if (this.badCharCount >= 2 && this.badCharCount * 5 >= this.doubleByteCharCount) {
+                // Bail out early if the byte data is not matching the encoding scheme.
+                this.bailedOut = true;
+            }
+        }
+
+        final long[] commonCharBits;
+
+        int totalCharCount;
+        int doubleByteCharCount;
+        int commonCharCount;
+        int badCharCount;
+        boolean bailedOut;
+    }
+
+    /**
+     * Counts escape sequences of an ISO-2022 encoding.
+     */
+    static final class EscapeCounts {
+        EscapeCounts(final byte[][] escapeSequences) {
+            this.escapeSequences = escapeSequences;
+        }
+
+        void reset() {
+            this.hits = 0;
+            this.misses = 0;
+        }
+
+        void count(final byte[] text, final int index, final int length) {
+            checkEscapes:
+            for (final byte[] sequence : this.escapeSequences) {
+                if (length - index < sequence.length) {
+                    continue;
+                }
+                for (int j = 1; j < sequence.length; j++) {
+                    if (sequence[j] != text[index + j]) {
+                        continue checkEscapes;
+                    }
+                }
+                this.hits++;
+                return;
+            }
+            this.misses++;
+        }
+
+        final byte[][] escapeSequences;
+
+        int hits;
+        int misses;
+    }
+
+    private static final long[] SJIS_COMMON_CHARS = bitmapOf(CharsetRecog_mbcs.CharsetRecog_sjis.commonChars);
+    private static final long[] BIG5_COMMON_CHARS = bitmapOf(CharsetRecog_mbcs.CharsetRecog_big5.commonChars);
+    private static final long[] EUC_JP_COMMON_CHARS = bitmapOf(CharsetRecog_mbcs.CharsetRecog_euc.CharsetRecog_euc_jp.commonChars);
+    private static final long[] EUC_KR_COMMON_CHARS = bitmapOf(CharsetRecog_mbcs.CharsetRecog_euc.CharsetRecog_euc_kr.commonChars);
+    private static final long[] GB18030_COMMON_CHARS = bitmapOf(CharsetRecog_mbcs.CharsetRecog_gb_18030.commonChars);
+
+    final short[] byteStats;
+    boolean hasC1Bytes;
+    int shifts;
+    final EscapeCounts iso2022jp;
+    final EscapeCounts iso2022kr;
+    final EscapeCounts iso2022cn;
+
+    int rawLength;
+    final UnicodeCounts utf8;
+    final UnicodeCounts utf32be;
+    final UnicodeCounts utf32le;
+    final MultiByteCounts sjis;
+    final MultiByteCounts big5;
+    final MultiByteCounts eucJp;
+    final MultiByteCounts eucKr;
+    final MultiByteCounts gb18030;
+
+    // The states of the encoding schemes in the raw input, which are carried over to a continuation.
+    private int utf8Trail;
+    private int utf32Word;
+    private int utf32Start;
+    private int sjisLead;
+    private int big5Lead;
+    private int eucLead;
+    private int eucRemaining;
+    private int eucValue;
+    private int gbState;
+    private int gbValue;
+    private int gbThird;
+}
@@ -1,7 +1,8 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess, and
- * - changing its class visibility to package-private.
+ * - moving its Java package to org.embulk.util.guess,
+ * - changing its class visibility to package-private, and
+ * - referring to a range of the input byte array with an offset.
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -54,7 +55,7 @@ class CharsetMatch implements Comparable<CharsetMatch> {
         InputStream inputStream = fInputStream;
         
         if (inputStream == null) {
-            inputStream = new ByteArrayInputStream(fRawInput, 0, fRawLength);
+            inputStream = new ByteArrayInputStream(fRawInput, fRawOffset, fRawLength);
         }
         
         try {
@@ -120,7 +121,7 @@ class CharsetMatch implements Comparable<CharsetMatch> {
             if (startSuffix > 0) {
                 name = name.substring(0, startSuffix);
             }
-            result = new String(fRawInput, name);
+            result = new String(fRawInput, fRawOffset, fRawLength, name);
         }
         return result;
 
@@ -206,6 +207,7 @@ class CharsetMatch implements Comparable<CharsetMatch> {
             // We only want the existing input byte data if it came straight from the user,
             //   not if is just the head of a stream.
             fRawInput    = det.fRawInput;
+            fRawOffset   = det.fRawOffset;
             fRawLength   = det.fRawLength;
         }
         fInputStream = det.fInputStream;
@@ -226,6 +228,7 @@ class CharsetMatch implements Comparable<CharsetMatch> {
             // We only want the existing input byte data if it came straight from the user,
             //   not if is just the head of a stream.
             fRawInput    = det.fRawInput;
+            fRawOffset   = det.fRawOffset;
             fRawLength   = det.fRawLength;
         }
         fInputStream = det.fInputStream;
@@ -240,6 +243,7 @@ class CharsetMatch implements Comparable<CharsetMatch> {
     private int                 fConfidence;
     private byte[]              fRawInput = null;     // Original, untouched input bytes.
                                                       //  If user gave us a byte array, this is it.
+    private int                 fRawOffset;           // Offset of data in fRawInput array.
     private int                 fRawLength;           // Length of data in fRawInput array.
 
     private InputStream         fInputStream = null;  // User's input stream, or null if the user
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Counts n-grams in the input which the single-byte charset recognizers score from.
+ *
+ * <p>The original ICU4J recognizers parse the input once for each n-gram table, and look up each n-gram by a binary
+ * search over the table. Instead, the n-gram tables are compiled into a single hash table at first, which maps an
+ * n-gram to the set of the tables which contain it as bits of {@code long}. The input is parsed only once for each
+ * byte map, which is shared by all the languages and the charsets on the map, and each n-gram is looked up only once
+ * in constant time for all of them.
+ *
+ * <p>The input is parsed lazily for each byte map on the first request for its tables, so that nothing is parsed
+ * when {@code CharsetDetector#detect()} stops before the single-byte recognizers.
+ */
+final class CharsetNGramStats {
+    CharsetNGramStats() {
+        this.parsed = new boolean[GROUPS.length];
+        this.ngramCounts = new int[GROUPS.length];
+        this.hitCounts = new int[TABLE_COUNT];
+    }
+
+    /**
+     * Forgets the counts to parse a new input.
+     */
+    void reset() {
+        Arrays.fill(this.parsed, false);
+    }
+
+    /**
+     * Computes the confidence from the n-grams in the input which hit the table, as {@code NGramParser#parse} did.
+     *
+     * <p>The input must be the same until {@link #reset()}.
+     */
+    int confidence(final byte[] input, final int length, final int[] ngrams) {
+        final int table = TABLE_IDS.get(ngrams);
+        final int group = TABLE_GROUPS[table];
+        if (!this.parsed[group]) {
+            this.parse(GROUPS[group], group, input, length);
+            this.parsed[group] = true;
+        }
+
+        final double rawPercent = (double) this.hitCounts[table] / (double) this.ngramCounts[group];
+
+        // TODO - This is a bit of a hack to take care of a case
+        // were we were getting a confidence of 135...
+        if (rawPercent > 0.33) {
+            return 98;
+        }
+
+        return (int) (rawPercent * 300.0);
+    }
+
+    private void parse(final Group group, final int groupIndex, final byte[] input, final int length) {
+        this.ngram = 0;
+        this.ngramCount = 0;
+        this.ignoreSpace = false;
+        for (int table = group.firstTable; table < group.firstTable + group.tableCount; table++) {
+            this.hitCounts[table] = 0;
+        }
+
+        if (group.arabicShaping) {
+            // Arabic shaping is done manually on bytes as the original ICU4J did. The input ends at NUL.
+            for (int i = 0; i < length && input[i] != 0; i++) {
+                final byte alef = CharsetRecog_sbcs.CharsetRecog_IBM420_ar.isLamAlef(input[i]);
+                if (alef != 0) {
+                    this.addMappedByte(group, group.byteMap[0xb1]);
+                    this.addMappedByte(group, group.byteMap[alef & 0xff]);
+                } else {
+                    this.addMappedByte(group, group.byteMap[CharsetRecog_sbcs.CharsetRecog_IBM420_ar.unshapeMap[input[i] & 0xff] & 0xff]);
+                }
+            }
+        } else {
+            final byte[] byteMap = group.byteMap;
+            for (int i = 0; i < length; i++) {
+                this.addMappedByte(group, byteMap[input[i] & 0xff]);
+            }
+        }
+
+        // TODO: Is this OK? The buffer could have ended in the middle of a word...
+        this.addNGram(group, group.spaceChar);
+
+        this.ngramCounts[groupIndex] = this.ngramCount;
+    }
+
+    private void addMappedByte(final Group group, final byte mappedByte) {
+        // TODO: 0x20 might not be a space in all character sets...
+        if (mappedByte != 0) {
+            if (!(mappedByte == group.spaceChar && this.ignoreSpace)) {
+                this.addNGram(group, mappedByte);
+            }
+            this.ignoreSpace = (mappedByte == group.spaceChar);
+        }
+    }
+
+    private void addNGram(final Group group, final byte mappedByte) {
+        this.ngram = ((this.ngram << 8) + (mappedByte & 0xff)) & 0xffffff;
+        this.ngramCount++;
+
+        long hits = lookup(this.ngram) & group.tableMask;
+        while (hits != 0) {
+            this.hitCounts[Long.numberOfTrailingZeros(hits)]++;
+            hits &= hits - 1;
+        }
+    }
+
+    /**
+     * Returns the set of the tables which contain the n-gram as bits.
+     */
+    private static long lookup(final int ngram) {
+        int slot = hash(ngram);
+        while (true) {
+            final int key = HASH_KEYS[slot];
+            if (key == ngram) {
+                return HASH_TABLES[slot];
+            }
+            if (key == EMPTY) {
+                return 0L;
+            }
+            slot = (slot + 1) & (HASH_SIZE - 1);
+        }
+    }
+
+    private static int hash(final int ngram) {
+        return (ngram * 0x9e3779b1) >>> (32 - HASH_BITS);
+    }
+
+    /**
+     * N-gram tables on the same byte map, which are counted in a single parse.
+     */
+    private static final class Group {
+        Group(final byte[] byteMap, final byte spaceChar, final boolean arabicShaping, final int[]... tables) {
+            this.byteMap = byteMap;
+            this.spaceChar = spaceChar;
+            this.arabicShaping = arabicShaping;
+            this.tables = tables;
+        }
+
+        final byte[] byteMap;
+        final byte spaceChar;
+        final boolean arabicShaping;
+        final int[][] tables;
+
+        int firstTable;
+        int tableCount;
+        long tableMask;
+    }
+
+    private static int[][] tablesOf(final CharsetRecog_sbcs.NGramsPlusLang[] ngramsPlusLangs) {
+        final int[][] tables = new int[ngramsPlusLangs.length][];
+        for (int i = 0; i < ngramsPlusLangs.length; i++) {
+            tables[i] = ngramsPlusLangs[i].fNGrams;
+        }
+        return tables;
+    }
+
+    private static final Group[] GROUPS = {
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_1.byteMap, (byte) 0x20, false,
+                  tablesOf(CharsetRecog_sbcs.CharsetRecog_8859_1.ngrams_8859_1)),
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_2.byteMap, (byte) 0x20, false,
+                  tablesOf(CharsetRecog_sbcs.CharsetRecog_8859_2.ngrams_8859_2)),
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_5.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_8859_5_ru.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_6.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_8859_6_ar.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_7.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_8859_7_el.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_8.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_8859_8_I_he.ngrams, CharsetRecog_sbcs.CharsetRecog_8859_8_he.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_8859_9.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_8859_9_tr.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_windows_1251.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_windows_1251.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_windows_1256.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_windows_1256.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_KOI8_R.byteMap, (byte) 0x20, false,
+                  CharsetRecog_sbcs.CharsetRecog_KOI8_R.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_IBM424_he.byteMap, (byte) 0x40, false,
+                  CharsetRecog_sbcs.CharsetRecog_IBM424_he_rtl.ngrams, CharsetRecog_sbcs.CharsetRecog_IBM424_he_ltr.ngrams),
+        new Group(CharsetRecog_sbcs.CharsetRecog_IBM420_ar.byteMap, (byte) 0x40, true,
+                  CharsetRecog_sbcs.CharsetRecog_IBM420_ar_rtl.ngrams, CharsetRecog_sbcs.CharsetRecog_IBM420_ar_ltr.ngrams),
+    };
+
+    private static final int EMPTY = -1;  // N-grams are 24 bits, never negative.
+    private static final int HASH_BITS = 12;
+    private static final int HASH_SIZE = 1 << HASH_BITS;
+
+    private static final int TABLE_COUNT;
+    private static final int[] TABLE_GROUPS;
+    private static final IdentityHashMap<int[], Integer> TABLE_IDS;
+    private static final int[] HASH_KEYS;
+    private static final long[] HASH_TABLES;
+
+    static {
+        int tableCount = 0;
+        for (final Group group : GROUPS) {
+            group.firstTable = tableCount;
+            group.tableCount = group.tables.length;
+            tableCount += group.tables.length;
+        }
+        if (tableCount > Long.SIZE) {
+            throw new AssertionError("Too many n-gram tables to be bits of long: " + tableCount);
+        }
+        TABLE_COUNT = tableCount;
+
+        TABLE_GROUPS = new int[tableCount];
+        TABLE_IDS = new IdentityHashMap<>();
+        HASH_KEYS = new int[HASH_SIZE];
+        HASH_TABLES = new long[HASH_SIZE];
+        Arrays.fill(HASH_KEYS, EMPTY);
+
+        for (int groupIndex = 0; groupIndex < GROUPS.length; groupIndex++) {
+            final Group group = GROUPS[groupIndex];
+            for (int i = 0; i < group.tables.length; i++) {
+                final int table = group.firstTable + i;
+                TABLE_GROUPS[table] = groupIndex;
+                TABLE_IDS.put(group.tables[i], table);
+                group.tableMask |= 1L << table;
+
+                for (final int ngram : group.tables[i]) {
+                    int slot = hash(ngram);
+                    while (HASH_KEYS[slot] != EMPTY && HASH_KEYS[slot] != ngram) {
+                        slot = (slot + 1) & (HASH_SIZE - 1);
+                    }
+                    HASH_KEYS[slot] = ngram;
+                    HASH_TABLES[slot] |= 1L << table;
+                }
+            }
+        }
+    }
+
+    private final boolean[] parsed;
+    private final int[] ngramCounts;
+    private final int[] hitCounts;
+
+    // The state in a parse.
+    private int ngram;
+    private int ngramCount;
+    private boolean ignoreSpace;
+}
@@ -1,6 +1,7 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess.
+ * - moving its Java package to org.embulk.util.guess, and
+ * - scoring from the counts collected by CharsetInputStats, instead of iterating over the input by itself.
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -26,53 +27,19 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
     
     /**
      * Matching function shared among the 2022 detectors JP, CN and KR
-     * Counts up the number of legal an unrecognized escape sequences in
-     * the sample of text, and computes a score based on the total number &
-     * the proportion that fit the encoding.
+     * Computes a score based on the total number & the proportion of the legal
+     * and unrecognized escape sequences in the sample of text, which are counted
+     * up in CharsetInputStats.
      * 
      * 
-     * @param text the byte buffer containing text to analyse
-     * @param textLen  the size of the text in the byte.
-     * @param escapeSequences the byte escape sequences to test for.
+     * @param counts the numbers of legal and unrecognized escape sequences.
+     * @param shifts the number of shift in/out in the text.
      * @return match quality, in the range of 0-100.
      */
-    int   match(byte [] text, int textLen, byte [][] escapeSequences) {
-        int     i, j;
-        int     escN;
-        int     hits   = 0;
-        int     misses = 0;
-        int     shifts = 0;
+    static int   match(CharsetInputStats.EscapeCounts counts, int shifts) {
+        int     hits   = counts.hits;
+        int     misses = counts.misses;
         int     quality;
-        scanInput:
-            for (i=0; i<textLen; i++) {
-                if (text[i] == 0x1b) {
-                    checkEscapes:
-                        for (escN=0; escN<escapeSequences.length; escN++) {
-                            byte [] seq = escapeSequences[escN];
-                            
-                            if ((textLen - i) < seq.length) {
-                                continue checkEscapes;
-                            }
-                            
-                            for (j=1; j<seq.length; j++) {
-                                if (seq[j] != text[i+j])  {
-                                    continue checkEscapes;
-                                }                                   
-                            }
-                            
-                            hits++; 
-                            i += seq.length-1;
-                            continue scanInput;
-                        }
-                
-                        misses++;                  
-                }
-                
-                if (text[i] == 0x0e || text[i] == 0x0f) {
-                    // Shift in/out
-                    shifts++;
-                }
-            }
         
         if (hits == 0) {
             return 0;
@@ -103,7 +70,7 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
  
     
     static class CharsetRecog_2022JP extends CharsetRecog_2022 {
-        private byte [] [] escapeSequences = {
+        static final byte [] [] escapeSequences = {
                 {0x1b, 0x24, 0x28, 0x43},   // KS X 1001:1992
                 {0x1b, 0x24, 0x28, 0x44},   // JIS X 212-1990
                 {0x1b, 0x24, 0x40},         // JIS C 6226-1978
@@ -123,13 +90,13 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
         }
         
         CharsetMatch   match(CharsetDetector det) {
-            int confidence = match(det.fInputBytes, det.fInputLen, escapeSequences);
+            int confidence = match(det.fStats.iso2022jp, det.fStats.shifts);
             return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
         }
     }
 
     static class CharsetRecog_2022KR extends CharsetRecog_2022 {
-        private byte [] [] escapeSequences = {
+        static final byte [] [] escapeSequences = {
                 {0x1b, 0x24, 0x29, 0x43}   
                  };
         
@@ -138,13 +105,13 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
         }
         
         CharsetMatch   match(CharsetDetector det) {
-            int confidence =  match(det.fInputBytes, det.fInputLen, escapeSequences);
+            int confidence =  match(det.fStats.iso2022kr, det.fStats.shifts);
             return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
         }
     }
 
     static class CharsetRecog_2022CN extends CharsetRecog_2022 {
-        private byte [] [] escapeSequences = {
+        static final byte [] [] escapeSequences = {
                 {0x1b, 0x24, 0x29, 0x41},   // GB 2312-80
                 {0x1b, 0x24, 0x29, 0x47},   // CNS 11643-1992 Plane 1
                 {0x1b, 0x24, 0x2A, 0x48},   // CNS 11643-1992 Plane 2
@@ -163,7 +130,7 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
         }
         
         CharsetMatch   match(CharsetDetector det) {
-            int confidence = match(det.fInputBytes, det.fInputLen, escapeSequences);
+            int confidence = match(det.fStats.iso2022cn, det.fStats.shifts);
             return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
         }
     }
@@ -1,6 +1,8 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess.
+ * - moving its Java package to org.embulk.util.guess,
+ * - scoring from the counts collected by CharsetInputStats, instead of iterating over the input by itself, and
+ * - reporting the raw input sampled as the bytes examined.
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -22,60 +24,21 @@ class CharsetRecog_UTF8 extends CharsetRecognizer {
         return "UTF-8";
     }
 
+    int getBytesExamined(CharsetDetector det) {
+        return det.fSampledLength;  // Multi-byte sequences are counted in the raw input sampled.
+    }
+
     /* (non-Javadoc)
      * @see com.ibm.icu.text.CharsetRecognizer#match(com.ibm.icu.text.CharsetDetector)
      */
     CharsetMatch match(CharsetDetector det) {
-        boolean     hasBOM = false;
-        int         numValid = 0;
-        int         numInvalid = 0;
-        byte        input[] = det.fRawInput;
-        int         i;
-        int         trailBytes = 0;
+        // Multi-byte sequences are counted in CharsetInputStats.
+        CharsetInputStats.UnicodeCounts counts = det.fStats.utf8;
+        boolean     hasBOM = counts.hasBom;
+        int         numValid = counts.valid;
+        int         numInvalid = counts.invalid;
         int         confidence;
         
-        if (det.fRawLength >= 3 && 
-                (input[0] & 0xFF) == 0xef && (input[1] & 0xFF) == 0xbb && (input[2] & 0xFF) == 0xbf) {
-            hasBOM = true;
-        }
-        
-        // Scan for multi-byte sequences
-        for (i=0; i<det.fRawLength; i++) {
-            int b = input[i];
-            if ((b & 0x80) == 0) {
-                continue;   // ASCII
-            }
-            
-            // Hi bit on char found.  Figure out how long the sequence should be
-            if ((b & 0x0e0) == 0x0c0) {
-                trailBytes = 1;                
-            } else if ((b & 0x0f0) == 0x0e0) {
-                trailBytes = 2;
-            } else if ((b & 0x0f8) == 0xf0) {
-                trailBytes = 3;
-            } else {
-                numInvalid++;
-                continue;
-            }
-                
-            // Verify that we've got the right number of trail bytes in the sequence
-            for (;;) {
-                i++;
-                if (i>=det.fRawLength) {
-                    break;
-                }
-                b = input[i];
-                if ((b & 0xc0) != 0x080) {
-                    numInvalid++;
-                    break;
-                }
-                if (--trailBytes == 0) {
-                    numValid++;
-                    break;
-                }
-            }
-        }
-        
         // Cook up some sort of confidence score, based on presense of a BOM
         //    and the existence of valid and/or invalid multi-byte sequences.
         confidence = 0;
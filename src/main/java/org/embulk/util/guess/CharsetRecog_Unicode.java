@@ -1,6 +1,9 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess.
+ * - moving its Java package to org.embulk.util.guess,
+ * - scoring UTF-32 from the counts collected by CharsetInputStats, instead of iterating over the input by itself,
+ * - reading UTF-16 from a range of the input byte array with an offset, and
+ * - reporting the bytes examined.
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -30,6 +33,10 @@ abstract class CharsetRecog_Unicode extends CharsetRecognizer {
      * @see com.ibm.icu.text.CharsetRecognizer#match(com.ibm.icu.text.CharsetDetector)
      */
     abstract CharsetMatch match(CharsetDetector det);
+
+    int getBytesExamined(CharsetDetector det) {
+        return det.fSampledLength;  // UTF-32 is counted in the raw input sampled.
+    }
     
     static int codeUnit16FromBytes(byte hi, byte lo) {
         return ((hi & 0xff) << 8) | (lo & 0xff);
@@ -61,14 +68,20 @@ abstract class CharsetRecog_Unicode extends CharsetRecognizer {
             return "UTF-16BE";
         }
         
+        int getBytesExamined(CharsetDetector det)
+        {
+            return Math.min(det.fRawLimit, 30);
+        }
+        
         CharsetMatch match(CharsetDetector det)
         {
             byte[] input = det.fRawInput;
+            int offset = det.fRawOffset;
             int confidence = 10;
             
-            int bytesToCheck = Math.min(input.length, 30);
+            int bytesToCheck = Math.min(det.fRawLimit, 30);
             for (int charIndex=0; charIndex<bytesToCheck-1; charIndex+=2) {
-                int codeUnit = codeUnit16FromBytes(input[charIndex], input[charIndex + 1]);
+                int codeUnit = codeUnit16FromBytes(input[offset + charIndex], input[offset + charIndex + 1]);
                 if (charIndex == 0 && codeUnit == 0xFEFF) {
                     confidence = 100;
                     break;
@@ -95,14 +108,20 @@ abstract class CharsetRecog_Unicode extends CharsetRecognizer {
             return "UTF-16LE";
         }
         
+        int getBytesExamined(CharsetDetector det)
+        {
+            return Math.min(det.fRawLimit, 30);
+        }
+        
         CharsetMatch match(CharsetDetector det)
         {
             byte[] input = det.fRawInput;
+            int offset = det.fRawOffset;
             int confidence = 10;
             
-            int bytesToCheck = Math.min(input.length, 30);
+            int bytesToCheck = Math.min(det.fRawLimit, 30);
             for (int charIndex=0; charIndex<bytesToCheck-1; charIndex+=2) {
-                int codeUnit = codeUnit16FromBytes(input[charIndex+1], input[charIndex]);
+                int codeUnit = codeUnit16FromBytes(input[offset + charIndex + 1], input[offset + charIndex]);
                 if (charIndex == 0 && codeUnit == 0xFEFF) {
                     confidence = 100;
                     break;
@@ -124,36 +143,24 @@ abstract class CharsetRecog_Unicode extends CharsetRecognizer {
     
     static abstract class CharsetRecog_UTF_32 extends CharsetRecog_Unicode
     {
-        abstract int getChar(byte[] input, int index);
+        abstract CharsetInputStats.UnicodeCounts getCounts(CharsetInputStats stats);
         
         abstract String getName();
         
         CharsetMatch match(CharsetDetector det)
         {
-            byte[] input   = det.fRawInput;
             int limit      = (det.fRawLength / 4) * 4;
-            int numValid   = 0;
-            int numInvalid = 0;
-            boolean hasBOM = false;
             int confidence = 0;
             
             if (limit==0) {
                 return null;
             }
-            if (getChar(input, 0) == 0x0000FEFF) {
-                hasBOM = true;
-            }
-            
-            for(int i = 0; i < limit; i += 4) {
-                int ch = getChar(input, i);
-                
-                if (ch < 0 || ch >= 0x10FFFF || (ch >= 0xD800 && ch <= 0xDFFF)) {
-                    numInvalid += 1;
-                } else {
-                    numValid += 1;
-                }
-            }
             
+            // Code units are counted in CharsetInputStats.
+            CharsetInputStats.UnicodeCounts counts = getCounts(det.fStats);
+            boolean hasBOM = counts.hasBom;
+            int numValid   = counts.valid;
+            int numInvalid = counts.invalid;
             
             // Cook up some sort of confidence score, based on presence of a BOM
             //    and the existence of valid and/or invalid multi-byte sequences.
@@ -176,10 +183,9 @@ abstract class CharsetRecog_Unicode extends CharsetRecognizer {
     
     static class CharsetRecog_UTF_32_BE extends CharsetRecog_UTF_32
     {
-        int getChar(byte[] input, int index)
+        CharsetInputStats.UnicodeCounts getCounts(CharsetInputStats stats)
         {
-            return (input[index + 0] & 0xFF) << 24 | (input[index + 1] & 0xFF) << 16 |
-                   (input[index + 2] & 0xFF) <<  8 | (input[index + 3] & 0xFF);
+            return stats.utf32be;
         }
         
         String getName()
@@ -191,10 +197,9 @@ abstract class CharsetRecog_Unicode extends CharsetRecognizer {
     
     static class CharsetRecog_UTF_32_LE extends CharsetRecog_UTF_32
     {
-        int getChar(byte[] input, int index)
+        CharsetInputStats.UnicodeCounts getCounts(CharsetInputStats stats)
         {
-            return (input[index + 3] & 0xFF) << 24 | (input[index + 2] & 0xFF) << 16 |
-                   (input[index + 1] & 0xFF) <<  8 | (input[index + 0] & 0xFF);
+            return stats.utf32le;
         }
         
         String getName()
@@ -1,6 +1,9 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess.
+ * - moving its Java package to org.embulk.util.guess,
+ * - scoring from the counts collected by CharsetInputStats, instead of iterating over the input by itself,
+ * - looking up the common characters in bitmaps in CharsetInputStats, instead of the binary searches, and
+ * - reporting the raw input sampled as the bytes examined.
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -14,8 +17,6 @@
  */
 package org.embulk.util.guess;
 
-import java.util.Arrays;
-
 /**
  * CharsetRecognizer implemenation for Asian  - double or multi-byte - charsets.
  *                   Match is determined mostly by the input data adhering to the
@@ -36,53 +37,32 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
      */
     abstract String      getName() ;
     
+    /**
+     * The multi-byte characters are counted in the raw input sampled, not in the filtered input.
+     */
+    int getBytesExamined(CharsetDetector det) {
+        return det.fSampledLength;
+    }
+    
     
     /**
-     * Test the match of this charset with the input text data
-     *      which is obtained via the CharsetDetector object.
+     * Compute the match confidence of this charset from the characters counted
+     *      in the input text data by CharsetInputStats.
      * 
-     * @param det  The CharsetDetector, which contains the input text
-     *             to be checked for being in this charset.
-     * @return     Two values packed into one int  (Damn java, anyhow)
-     *             <br/>
-     *             bits 0-7:  the match confidence, ranging from 0-100
-     *             <br/>
-     *             bits 8-15: The match reason, an enum-like value.
+     * @param counts  The counts of characters in the encoding scheme of this charset.
+     * @return        the match confidence, ranging from 0-100
      */
-    int match(CharsetDetector det, int [] commonChars) {
-        @SuppressWarnings("unused")
-        int   singleByteCharCount = 0;  //TODO Do we really need this?
-        int   doubleByteCharCount = 0;
-        int   commonCharCount     = 0;
-        int   badCharCount        = 0;
-        int   totalCharCount      = 0;
+    static int match(CharsetInputStats.MultiByteCounts counts) {
+        int   doubleByteCharCount = counts.doubleByteCharCount;
+        int   commonCharCount     = counts.commonCharCount;
+        int   badCharCount        = counts.badCharCount;
+        int   totalCharCount      = counts.totalCharCount;
         int   confidence          = 0;
-        iteratedChar   iter       = new iteratedChar();
         
         detectBlock: {
-            for (iter.reset(); nextChar(iter, det);) {
-                totalCharCount++;
-                if (iter.error) {
-                    badCharCount++; 
-                } else {
-                    long cv = iter.charValue & 0xFFFFFFFFL;
-                                        
-                    if (cv <= 0xff) {
-                        singleByteCharCount++;
-                    } else {
-                        doubleByteCharCount++;
-                        if (commonChars != null) {
-                            // NOTE: This assumes that there are no 4-byte common chars.
-                            if (Arrays.binarySearch(commonChars, (int) cv) >= 0) {
-                                commonCharCount++;
-                            }
-                        }
-                    }
-                }
-                if (badCharCount >= 2 && badCharCount*5 >= doubleByteCharCount) {
-                    // Bail out early if the byte data is not matching the encoding scheme.
-                    break detectBlock;
-                }
+            if (counts.bailedOut) {
+                // Bailed out early as the byte data is not matching the encoding scheme.
+                break detectBlock;
             }
             
             if (doubleByteCharCount <= 10 && badCharCount== 0) {
@@ -111,7 +91,7 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
                 break detectBlock;
             }
             
-            if (commonChars == null) {
+            if (counts.commonCharBits == null) {
                 // We have no statistics on frequently occuring characters.
                 //  Assess confidence purely on having a reasonable number of
                 //  multi-byte characters (the more the better
@@ -133,58 +113,15 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
         return confidence;
     }
     
-     // "Character"  iterated character class.
-     //    Recognizers for specific mbcs encodings make their "characters" available
-     //    by providing a nextChar() function that fills in an instance of iteratedChar
-     //    with the next char from the input.
-     //    The returned characters are not converted to Unicode, but remain as the raw
+     // The characters are iterated in CharsetInputStats according to the rules of
+     //    the encoding scheme of each charset, all at once in a single pass.
+     //    The characters are not converted to Unicode, but remain as the raw
      //    bytes (concatenated into an int) from the codepage data.
      //
      //  For Asian charsets, use the raw input rather than the input that has been
      //   stripped of markup.  Detection only considers multi-byte chars, effectively
      //   stripping markup anyway, and double byte chars do occur in markup too.
      //
-     static class iteratedChar {
-         int             charValue = 0;             // 1-4 bytes from the raw input data
-         int             index     = 0;
-         int             nextIndex = 0;
-         boolean         error     = false;
-         boolean         done      = false;
-         
-         void reset() {
-             charValue = 0;
-             index     = -1;
-             nextIndex = 0;
-             error     = false;
-             done      = false;
-         }
-         
-         int nextByte(CharsetDetector det) {
-             if (nextIndex >= det.fRawLength) {
-                 done = true;
-                 return -1;
-             }
-             int byteValue = (int)det.fRawInput[nextIndex++] & 0x00ff;
-             return byteValue;
-         }       
-     }
-     
-     /**
-      * Get the next character (however many bytes it is) from the input data
-      *    Subclasses for specific charset encodings must implement this function
-      *    to get characters according to the rules of their encoding scheme.
-      * 
-      *  This function is not a method of class iteratedChar only because
-      *   that would require a lot of extra derived classes, which is awkward.
-      * @param it  The iteratedChar "struct" into which the returned char is placed.
-      * @param det The charset detector, which is needed to get at the input byte data
-      *            being iterated over.
-      * @return    True if a character was returned, false at end of input.
-      */
-     abstract boolean nextChar(iteratedChar it, CharsetDetector det);
-     
-
-
      
      
      /**
@@ -203,33 +140,8 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
              0x8343, 0x834e, 0x834f, 0x8358, 0x835e, 0x8362, 0x8367, 0x8375, 0x8376, 0x8389, 
              0x838a, 0x838b, 0x838d, 0x8393, 0x8e96, 0x93fa, 0x95aa};
          
-         boolean nextChar(iteratedChar it, CharsetDetector det) {
-             it.index = it.nextIndex;
-             it.error = false;
-             int firstByte;
-             firstByte = it.charValue = it.nextByte(det);
-             if (firstByte < 0) {
-                 return false;
-             }
-             
-             if (firstByte <= 0x7f || (firstByte>0xa0 && firstByte<=0xdf)) {
-                 return true;
-             }
-             
-             int secondByte = it.nextByte(det);
-             if (secondByte < 0)  {
-                 return false;          
-             }
-             it.charValue = (firstByte << 8) | secondByte;
-             if (! ((secondByte>=0x40 && secondByte<=0x7f) || (secondByte>=0x80 && secondByte<=0xff))) {
-                 // Illegal second byte value.
-                 it.error = true;
-             }
-             return true;
-         }
-         
          CharsetMatch match(CharsetDetector det) {
-             int confidence = match(det, commonChars);
+             int confidence = match(det.fStats.sjis);
              return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
          }
          
@@ -266,36 +178,8 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
              0xb5a5, 0xb5bd, 0xb5d0, 0xb5d8, 0xb671, 0xb7ed, 0xb867, 0xb944, 0xbad8, 0xbb44, 
              0xbba1, 0xbdd1, 0xc2c4, 0xc3b9, 0xc440, 0xc45f};
           
-         boolean nextChar(iteratedChar it, CharsetDetector det) {
-             it.index = it.nextIndex;
-             it.error = false;
-             int firstByte;
-             firstByte = it.charValue = it.nextByte(det);
-             if (firstByte < 0) {
-                 return false;
-             }
-             
-             if (firstByte <= 0x7f || firstByte==0xff) {
-                 // single byte character.
-                 return true;
-             }
-             
-             int secondByte = it.nextByte(det);
-             if (secondByte < 0)  {
-                 return false;          
-             }
-             it.charValue = (it.charValue << 8) | secondByte;
-
-             if (secondByte < 0x40 ||
-                 secondByte ==0x7f ||
-                 secondByte == 0xff) {
-                     it.error = true;
-             }
-             return true;
-         }
-         
          CharsetMatch match(CharsetDetector det) {
-             int confidence = match(det, commonChars);
+             int confidence = match(det.fStats.big5);
              return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
          }
          
@@ -312,76 +196,13 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
      
      
      /**
-      *   EUC charset recognizers.  One abstract class that provides the common function
-      *             for getting the next character according to the EUC encoding scheme,
+      *   EUC charset recognizers.  One abstract class for the EUC encoding scheme,
+      *             whose characters are counted together in CharsetInputStats,
       *             and nested derived classes for EUC_KR, EUC_JP, EUC_CN.   
       *
       */
      abstract static class CharsetRecog_euc extends CharsetRecog_mbcs {
          
-         /*
-          *  (non-Javadoc)
-          *  Get the next character value for EUC based encodings.
-          *  Character "value" is simply the raw bytes that make up the character
-          *     packed into an int.
-          */
-         boolean nextChar(iteratedChar it, CharsetDetector det) {
-             it.index = it.nextIndex;
-             it.error = false;
-             int firstByte  = 0;
-             int secondByte = 0;
-             int thirdByte  = 0;
-             //int fourthByte = 0;
-             
-             buildChar: {
-                 firstByte = it.charValue = it.nextByte(det);                 
-                 if (firstByte < 0) {
-                     // Ran off the end of the input data
-                     it.done = true;
-                     break buildChar;
-                 }
-                 if (firstByte <= 0x8d) {
-                     // single byte char
-                     break buildChar;
-                 }
-                 
-                 secondByte = it.nextByte(det);
-                 it.charValue = (it.charValue << 8) | secondByte;
-                 
-                 if (firstByte >= 0xA1 && firstByte <= 0xfe) {
-                     // Two byte Char
-                     if (secondByte < 0xa1) {
-                         it.error = true;
-                     }
-                     break buildChar;
-                 }
-                 if (firstByte == 0x8e) {
-                     // Code Set 2.
-                     //   In EUC-JP, total char size is 2 bytes, only one byte of actual char value.
-                     //   In EUC-TW, total char size is 4 bytes, three bytes contribute to char value.
-                     // We don't know which we've got.
-                     // Treat it like EUC-JP.  If the data really was EUC-TW, the following two
-                     //   bytes will look like a well formed 2 byte char.  
-                     if (secondByte < 0xa1) {
-                         it.error = true;
-                     }
-                     break buildChar;                     
-                 }
-                 
-                 if (firstByte == 0x8f) {
-                     // Code set 3.
-                     // Three byte total char size, two bytes of actual char value.
-                     thirdByte    = it.nextByte(det);
-                     it.charValue = (it.charValue << 8) | thirdByte;
-                     if (thirdByte < 0xa1) {
-                         it.error = true;
-                     }
-                 }
-              }
-             
-             return (it.done == false);
-         }
-         
          /**
           * The charset recognize for EUC-JP.  A singleton instance of this class
           *    is created and kept by the public CharsetDetector class
@@ -406,7 +227,7 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
              }
              
              CharsetMatch match(CharsetDetector det) {
-                 int confidence = match(det, commonChars);
+                 int confidence = match(det.fStats.eucJp);
                  return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
              }
              
@@ -441,7 +262,7 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
              }
              
              CharsetMatch match(CharsetDetector det) {
-                 int confidence = match(det, commonChars);
+                 int confidence = match(det.fStats.eucKr);
                  return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
              }
              
@@ -459,65 +280,6 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
       */
      static class CharsetRecog_gb_18030 extends CharsetRecog_mbcs {
          
-         /*
-          *  (non-Javadoc)
-          *  Get the next character value for EUC based encodings.
-          *  Character "value" is simply the raw bytes that make up the character
-          *     packed into an int.
-          */
-         boolean nextChar(iteratedChar it, CharsetDetector det) {
-             it.index = it.nextIndex;
-             it.error = false;
-             int firstByte  = 0;
-             int secondByte = 0;
-             int thirdByte  = 0;
-             int fourthByte = 0;
-             
-             buildChar: {
-                 firstByte = it.charValue = it.nextByte(det); 
-                 
-                 if (firstByte < 0) {
-                     // Ran off the end of the input data
-                     it.done = true;
-                     break buildChar;
-                 }
-                 
-                 if (firstByte <= 0x80) {
-                     // single byte char
-                     break buildChar;
-                 }
-                 
-                 secondByte = it.nextByte(det);
-                 it.charValue = (it.charValue << 8) | secondByte;
-                 
-                 if (firstByte >= 0x81 && firstByte <= 0xFE) {
-                     // Two byte Char
-                     if ((secondByte >= 0x40 && secondByte <= 0x7E) || (secondByte >=80 && secondByte <=0xFE)) {
-                         break buildChar;
-                     }
-                     
-                     // Four byte char
-                     if (secondByte >= 0x30 && secondByte <= 0x39) {
-                         thirdByte = it.nextByte(det);
-                         
-                         if (thirdByte >= 0x81 && thirdByte <= 0xFE) {
-                             fourthByte = it.nextByte(det);
-                             
-                             if (fourthByte >= 0x30 && fourthByte <= 0x39) {
-                                 it.charValue = (it.charValue << 16) | (thirdByte << 8) | fourthByte;
-                                 break buildChar;
-                             }
-                         }
-                     }
-                     
-                     it.error = true;
-                     break buildChar;
-                 }
-             }
-                 
-             return (it.done == false);
-         }
-         
          static int [] commonChars = 
              // TODO:  This set of data comes from the character frequency-
              //        of-occurence analysis tool.  The data needs to be moved
@@ -539,7 +301,7 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
          }
          
          CharsetMatch match(CharsetDetector det) {
-             int confidence = match(det, commonChars);
+             int confidence = match(det.fStats.gb18030);
              return confidence == 0 ? null : new CharsetMatch(det, this, confidence);
          }
          
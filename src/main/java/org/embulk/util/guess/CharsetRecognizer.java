@@ -1,6 +1,8 @@
 /*
  * This file is based on a copy from ICU4J 57.2 with modification on :
- * - moving its Java package to org.embulk.util.guess.
+ * - moving its Java package to org.embulk.util.guess,
+ * - adding getMaxConfidence() for CharsetDetector#detect() to stop early, and
+ * - adding getBytesExamined() for CharsetGuessListener.
  *
  * It is licensed under the ICU License, which is bundled as LICENSE.icu4j.
  */
@@ -54,4 +56,29 @@ abstract class CharsetRecognizer {
      */
     abstract CharsetMatch  match(CharsetDetector det);
 
+    /**
+     * Get the highest confidence which this recognizer can ever return.
+     * CharsetDetector#detect() skips this recognizer once it has found
+     * a match which this recognizer can never outmatch.
+     *
+     * @return the upper bound of the match confidence, ranging from 0-100.
+     */
+    int           getMaxConfidence()
+    {
+        return 100;
+    }
+
+    /**
+     * Get the number of bytes of the input which the confidence of this recognizer
+     * is based on, to be reported to CharsetGuessListener. The recognizers check
+     * the filtered input by default.
+     *
+     * @param det  The CharsetDetector, which contains the input text.
+     * @return the number of bytes examined.
+     */
+    int           getBytesExamined(CharsetDetector det)
+    {
+        return det.fInputLen;
+    }
+
 }
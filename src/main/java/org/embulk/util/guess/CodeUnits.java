@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Code units to find CR and LF in a byte sequence of a charset without decoding it.
+ *
+ * <p>CR and LF are single bytes in ASCII-compatible charsets, including multibyte charsets such as Shift_JIS and
+ * EUC-JP whose trailing bytes never collide with them. They are counted in {@link #BYTES} also in unknown charsets.
+ *
+ * <p>The bytes are read from {@link java.nio.ByteBuffer} at absolute indices, so that a byte array wrapped, and a file
+ * mapped are read in the same way.
+ */
+enum CodeUnits {
+    BYTES(1, true),
+    UTF_16BE(2, true),
+    UTF_16LE(2, false),
+    UTF_32BE(4, true),
+    UTF_32LE(4, false),
+    ;
+
+    private CodeUnits(final int width, final boolean bigEndian) {
+        this.width = width;
+        this.bigEndian = bigEndian;
+    }
+
+    /**
+     * Returns the code units of the charset.
+     *
+     * <p>The byte order of {@code "UTF-16"} and {@code "UTF-32"} is taken from the byte order mark at the beginning of
+     * the byte sequence, or big endian without it, as Java decodes.
+     */
+    static CodeUnits of(final String charsetName, final ByteBuffer bytes, final int offset, final int length) {
+        switch (canonicalNameOf(charsetName)) {
+            case "UTF-16":
+                return startsWith(bytes, offset, length, UTF_16LE_BOM) ? UTF_16LE : UTF_16BE;
+            case "UTF-16BE":
+                return UTF_16BE;
+            case "UTF-16LE":
+            case "x-UTF-16LE-BOM":
+                return UTF_16LE;
+            case "UTF-32":
+                return startsWith(bytes, offset, length, UTF_32LE_BOM) ? UTF_32LE : UTF_32BE;
+            case "UTF-32BE":
+            case "X-UTF-32BE-BOM":
+                return UTF_32BE;
+            case "UTF-32LE":
+            case "X-UTF-32LE-BOM":
+                return UTF_32LE;
+            default:
+                return BYTES;
+        }
+    }
+
+    /**
+     * Reads a code unit from {@code index}, which must have {@link #width} bytes readable.
+     */
+    int read(final ByteBuffer bytes, final int index) {
+        int unit = 0;
+        for (int j = 0; j < this.width; j++) {
+            unit = (unit << 8) | (bytes.get(index + (this.bigEndian ? j : this.width - 1 - j)) & 0xff);
+        }
+        return unit;
+    }
+
+    /**
+     * Returns the length of the byte order mark at the beginning of the byte sequence, or 0 if it does not start with one.
+     *
+     * <p>The byte order mark in {@link #BYTES} is recognized only in UTF-8.
+     */
+    int byteOrderMarkLength(final String charsetName, final ByteBuffer bytes, final int offset, final int length) {
+        if (this == BYTES) {
+            return (canonicalNameOf(charsetName).equals("UTF-8") && startsWith(bytes, offset, length, UTF_8_BOM)) ? UTF_8_BOM.length : 0;
+        }
+        return (length >= this.width && this.read(bytes, offset) == 0xfeff) ? this.width : 0;
+    }
+
+    /**
+     * Returns the length of the byte order mark which is skipped in decoding lines as {@code LineDecoder} does, or 0 if
+     * it is not skipped.
+     *
+     * <p>{@code LineDecoder} skips the byte order mark in UTF-8, and Java skips it in {@code "UTF-16"} and UTF-32. Java
+     * keeps it as U+FEFF in {@code "UTF-16BE"} and {@code "UTF-16LE"}, which are explicit about the byte order.
+     */
+    int skippedByteOrderMarkLength(final String charsetName, final ByteBuffer bytes, final int offset, final int length) {
+        switch (canonicalNameOf(charsetName)) {
+            case "UTF-16BE":
+            case "UTF-16LE":
+                return 0;
+            default:
+                return this.byteOrderMarkLength(charsetName, bytes, offset, length);
+        }
+    }
+
+    /**
+     * Returns the charset to decode a part of the byte sequence, such as a line, in the byte order of the code units.
+     *
+     * <p>A part never starts with the byte order mark, without which Java decodes {@code "UTF-16"} and {@code "UTF-32"}
+     * in big endian even if the byte sequence is in little endian. The charset is returned as it is in {@link #BYTES}.
+     */
+    Charset charsetOfParts(final Charset charset) {
+        switch (this) {
+            case UTF_16BE:
+                return StandardCharsets.UTF_16BE;
+            case UTF_16LE:
+                return StandardCharsets.UTF_16LE;
+            case UTF_32BE:
+                return Charset.forName("UTF-32BE");
+            case UTF_32LE:
+                return Charset.forName("UTF-32LE");
+            default:
+                return charset;
+        }
+    }
+
+    /**
+     * Tests if the byte sequence ends with the code units of the characters.
+     */
+    boolean endsWith(final ByteBuffer bytes, final int offset, final int length, final String characters) {
+        final int start = offset + length - characters.length() * this.width;
+        if (start < offset) {
+            return false;
+        }
+        for (int k = 0; k < characters.length(); k++) {
+            if (this.read(bytes, start + k * this.width) != characters.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String canonicalNameOf(final String charsetName) {
+        try {
+            return Charset.forName(charsetName).name();
+        } catch (final IllegalArgumentException ex) {  // Including IllegalCharsetNameException and UnsupportedCharsetException.
+            return charsetName;
+        }
+    }
+
+    private static boolean startsWith(final ByteBuffer bytes, final int offset, final int length, final byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    final int width;
+    final boolean bigEndian;
+
+    private static final byte[] UTF_8_BOM = { (byte) 0xef, (byte) 0xbb, (byte) 0xbf };
+    private static final byte[] UTF_16LE_BOM = { (byte) 0xff, (byte) 0xfe };
+    private static final byte[] UTF_32LE_BOM = { (byte) 0xff, (byte) 0xfe, 0, 0 };
+}
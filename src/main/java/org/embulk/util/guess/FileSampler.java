@@ -0,0 +1,208 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.text.LineDelimiter;
+import org.embulk.util.text.Newline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples lines from windows spread over a large local file: the head, interior points, and the tail.
+ *
+ * <p>Guessing only from the head of a file misses columns which are populated first deep in the file. A sampler maps
+ * a fixed number of bounded windows at evenly spaced positions, so that the lines are sampled from the whole file within
+ * a fixed I/O budget. Each window but the head is realigned to the line boundary next to its beginning, and a partial
+ * line at the end of each window is dropped. The lines of the windows are joined in the order of the file as one sample
+ * for {@link LineGuessHelper}, and then for {@link SchemaGuess} once they are parsed into records.
+ *
+ * <p>A file as small as the windows in total is converted as a whole, as {@link LineGuessHelper#toLines(ConfigSource, Path, int)} does.
+ */
+public final class FileSampler {
+    private FileSampler(final ConfigMapperFactory configMapperFactory, final int windowBytes, final int windowCount) {
+        this.configMapperFactory = configMapperFactory;
+        this.windowBytes = windowBytes;
+        this.windowCount = windowCount;
+    }
+
+    /**
+     * Creates a sampler.
+     *
+     * @param configMapperFactory  the factory to create {@link org.embulk.config.ConfigDiff}
+     * @param windowBytes  the number of bytes of each window
+     * @param windowCount  the number of the windows including the head and the tail, or {@code 1} only for the head
+     * @return {@link FileSampler} created
+     * @throws IllegalArgumentException  if the window or the count is not positive
+     */
+    public static FileSampler of(final ConfigMapperFactory configMapperFactory, final int windowBytes, final int windowCount) {
+        if (windowBytes <= 0) {
+            throw new IllegalArgumentException("windowBytes must be positive: " + windowBytes);
+        }
+        if (windowCount <= 0) {
+            throw new IllegalArgumentException("windowCount must be positive: " + windowCount);
+        }
+        return new FileSampler(configMapperFactory, windowBytes, windowCount);
+    }
+
+    /**
+     * Samples lines from the windows of a file.
+     *
+     * <p>A character set is guessed from all the windows unless {@code parser.charset} is configured, so that a character
+     * set which appears only after the head can also be guessed. Windows larger than 64 KiB in total are sampled from the
+     * beginning of each window, taking an equal share of the 64 KiB.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param file  the file to be sampled
+     * @return the lines sampled, or {@code null} if the config is invalid
+     * @throws IOException  if the file cannot be read
+     */
+    public List<String> toLines(final ConfigSource config, final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return this.toLines(config, channel);
+        }
+    }
+
+    /**
+     * Samples lines from the windows of a file as {@link #toLines(ConfigSource, Path)} does, through an open channel.
+     *
+     * <p>The windows are mapped regardless of the position of the channel. The channel is not closed.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param channel  the channel of the file to be sampled
+     * @return the lines sampled, or {@code null} if the config is invalid
+     * @throws IOException  if the file cannot be read
+     */
+    public List<String> toLines(final ConfigSource config, final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (this.windowCount == 1) {
+            return LineGuessHelper.of(this.configMapperFactory).toLines(config, channel, this.windowBytes);
+        }
+        // The margin keeps the windows apart after their positions are aligned.
+        if (size <= (long) (this.windowBytes + ALIGNMENT) * this.windowCount) {
+            return LineGuessHelper.of(this.configMapperFactory).toLines(config, channel, (int) Math.min(size, Integer.MAX_VALUE));
+        }
+
+        final ArrayList<ByteBuffer> windows = new ArrayList<>(this.windowCount);
+        for (int k = 0; k < this.windowCount; k++) {
+            final long position = alignDown((size - this.windowBytes) * k / (this.windowCount - 1));
+            // The last window is extended to the end of the file beyond the alignment.
+            windows.add(MappedSample.map(channel, position, (int) ((k == this.windowCount - 1) ? size - position : this.windowBytes)));
+        }
+
+        final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
+
+        final Charset charset;
+        final LineDelimiter lineDelimiter;
+        final Newline newline;
+        try {
+            if (parserConfig.has("charset")) {
+                charset = Charset.forName(parserConfig.get(String.class, "charset", "utf-8"));
+            } else {
+                charset = Charset.forName(CharsetGuess.of(this.configMapperFactory).guessCharsetName(windows));
+            }
+            lineDelimiter = GuessUtil.getLineDelimiter(parserConfig);
+            newline = GuessUtil.getNewline(parserConfig);
+        } catch (final IllegalArgumentException ex) {
+            logger.warn(ex.getMessage(), ex);
+            return null;
+        }
+
+        final ByteBuffer head = windows.get(0);
+        final CodeUnits units = CodeUnits.of(charset.name(), head, 0, head.limit());
+
+        final ArrayList<String> lines = new ArrayList<>();
+        for (int k = 0; k < windows.size(); k++) {
+            final ByteBuffer window = windows.get(k);
+            final int start = (k == 0) ? 0 : nextLineStart(window, units, lineDelimiter);
+            if (start < 0) {
+                continue;  // No line boundary in the window.
+            }
+            final int length = window.limit() - start;
+            final LineIndex.Builder builder = new LineIndex.Builder(
+                    units, lineDelimiter, (k == 0) ? units.skippedByteOrderMarkLength(charset.name(), window, 0, length) : 0);
+            NewlineGuess.NewlineCounts.count(window, start, length, units, builder);
+
+            // Only the tail ends at the end of the file. The other windows end with a partial line, which is never indexed.
+            final boolean endsWithNewline = (k < windows.size() - 1) || units.endsWith(window, start, length, newline.getString());
+            final LineIndex index = builder.build(window, start, length, charset, endsWithNewline);
+            for (int i = 0; i < index.size(); i++) {
+                lines.add(index.getLine(i).toString());
+            }
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Returns the index next to the first line delimiter in the window, or {@code -1} if not found.
+     *
+     * <p>CR at the end of the window is not taken when any of CR, LF, and CRLF is a line delimiter, since LF may follow.
+     */
+    private static int nextLineStart(final ByteBuffer window, final CodeUnits units, final LineDelimiter lineDelimiter) {
+        final int width = units.width;
+        for (int i = 0; i + width <= window.limit(); i += width) {
+            final int unit = units.read(window, i);
+            if (unit == '\n') {
+                if (lineDelimiter == null || lineDelimiter == LineDelimiter.LF) {
+                    return i + width;
+                }
+                if (lineDelimiter == LineDelimiter.CRLF && i >= width && units.read(window, i - width) == '\r') {
+                    return i + width;
+                }
+            } else if (unit == '\r') {
+                if (lineDelimiter == LineDelimiter.CR) {
+                    return i + width;
+                }
+                if (lineDelimiter == null) {
+                    if (i + width * 2 > window.limit()) {
+                        return -1;
+                    }
+                    if (units.read(window, i + width) != '\n') {
+                        return i + width;
+                    }
+                    // LF next to CR is taken in the next iteration.
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Aligns the position to code units of any charset, which are up to four bytes.
+     */
+    private static long alignDown(final long position) {
+        return position - (position % ALIGNMENT);
+    }
+
+    private static final int ALIGNMENT = 4;
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSampler.class);
+
+    private final ConfigMapperFactory configMapperFactory;
+    private final int windowBytes;
+    private final int windowCount;
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigSource;
+import org.embulk.config.DataSource;
+import org.embulk.spi.Buffer;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches results of guesses in a local directory, keyed by the hash of the sample, the config, and the library code.
+ *
+ * <p>It sits in front of {@link CharsetGuess}, {@link NewlineGuess}, {@link SchemaGuess} and {@link TimeFormatGuess}.
+ * Guessing an unchanged sample again only hashes the sample, and reads a small file.
+ *
+ * <p>An entry is a file named with the SHA-256 hash of its key. It is written into a temporary file, and then moved
+ * atomically, so that several processes can share the directory without locks. A reader never sees a partial entry,
+ * and an entry deleted by another process is just a miss. The total size of the entries is bounded approximately.
+ * When it exceeds the bound, the least recently used entries are evicted by their last modified time, which is updated
+ * on every hit.
+ *
+ * <p>The library code is fingerprinted by its version only in a release. A SNAPSHOT or a build without a version is
+ * fingerprinted by the hash of the jar file or the class files which it is loaded from, so that results guessed by
+ * other code never match after the guess logic changes. If the code cannot be read, the cache is never read nor written.
+ *
+ * <p>A failure in reading or writing the cache never fails a guess. The guess is just done without the cache.
+ */
+public final class GuessCache {
+    private GuessCache(final ConfigMapperFactory configMapperFactory, final Path directory, final long maxBytes, final long currentBytes) {
+        this.configMapperFactory = configMapperFactory;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.approximateBytes = new AtomicLong(currentBytes);
+    }
+
+    /**
+     * Opens a cache in a directory, which is created if it does not exist.
+     *
+     * @param configMapperFactory  the factory to create {@link org.embulk.config.ConfigDiff} from cached entries
+     * @param directory  the directory to store entries
+     * @param maxBytes  the approximate bound of the total size of the entries
+     * @return {@link GuessCache} opened
+     * @throws IOException  if the directory cannot be created or read
+     */
+    public static GuessCache open(final ConfigMapperFactory configMapperFactory, final Path directory, final long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The size of GuessCache must be positive: " + maxBytes);
+        }
+        Files.createDirectories(directory);
+        long currentBytes = 0;
+        for (final Entry entry : listEntries(directory)) {
+            currentBytes += entry.size;
+        }
+        return new GuessCache(configMapperFactory, directory, maxBytes, currentBytes);
+    }
+
+    /**
+     * Guesses a character set by {@link CharsetGuess#guess(Buffer)} through the cache.
+     *
+     * @param charsetGuess  the guess to run on a miss
+     * @param sample  the byte sequence to be guessed
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     */
+    public ConfigDiff guessCharset(final CharsetGuess charsetGuess, final Buffer sample) {
+        if (CODE_FINGERPRINT == null) {
+            return charsetGuess.guess(sample);
+        }
+        final String key = this.newKey("charset").with(charsetGuess.getProfile()).with(sample).digest();
+        final JsonNode cached = this.get(key);
+        if (cached != null) {
+            return this.toConfigDiff(cached);
+        }
+        final ConfigDiff guessed = charsetGuess.guess(sample);
+        this.put(key, toJson(guessed));
+        return guessed;
+    }
+
+    /**
+     * Guesses a newline by {@link NewlineGuess#guess(ConfigSource, Buffer)} through the cache.
+     *
+     * @param newlineGuess  the guess to run on a miss
+     * @param config  a partial config which it starts guessing from
+     * @param sample  the byte sequence to be guessed
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     */
+    public ConfigDiff guessNewline(final NewlineGuess newlineGuess, final ConfigSource config, final Buffer sample) {
+        if (CODE_FINGERPRINT == null) {
+            return newlineGuess.guess(config, sample);
+        }
+        final String key = this.newKey("newline").with(toJson(config).toString()).with(sample).digest();
+        final JsonNode cached = this.get(key);
+        if (cached != null) {
+            return this.toConfigDiff(cached);
+        }
+        final ConfigDiff guessed = newlineGuess.guess(config, sample);
+        this.put(key, toJson(guessed));
+        return guessed;
+    }
+
+    /**
+     * Guesses a schema by {@link SchemaGuess#fromListRecords(List, List)} through the cache.
+     *
+     * <p>Sample values are keyed by their classes and their string representations.
+     *
+     * @param schemaGuess  the guess to run on a miss
+     * @param columnNames  a list of column names in order
+     * @param samples  a list of sample data
+     * @return a list of {@link org.embulk.config.ConfigDiff}s of the schema guessed
+     */
+    public List<ConfigDiff> guessSchema(final SchemaGuess schemaGuess, final List<String> columnNames, final List<List<Object>> samples) {
+        if (CODE_FINGERPRINT == null) {
+            return schemaGuess.fromListRecords(columnNames, samples);
+        }
+        final Key keyBuilder = this.newKey("schema").with(columnNames.size());
+        for (final String columnName : columnNames) {
+            keyBuilder.with(columnName);
+        }
+        for (final List<Object> record : samples) {
+            keyBuilder.with(record.size());
+            for (final Object value : record) {
+                keyBuilder.with(value);
+            }
+        }
+        final String key = keyBuilder.digest();
+
+        final JsonNode cached = this.get(key);
+        if (cached != null && cached.isArray()) {
+            final ArrayList<ConfigDiff> columns = new ArrayList<>();
+            for (final JsonNode column : cached) {
+                columns.add(this.toConfigDiff(column));
+            }
+            return Collections.unmodifiableList(columns);
+        }
+        final List<ConfigDiff> guessed = schemaGuess.fromListRecords(columnNames, samples);
+        final ArrayNode columns = JsonNodeFactory.instance.arrayNode();
+        for (final ConfigDiff column : guessed) {
+            columns.add(toJson(column));
+        }
+        this.put(key, columns);
+        return guessed;
+    }
+
+    /**
+     * Guesses a time format by {@link TimeFormatGuess#guess(Iterable)} through the cache.
+     *
+     * <p>The texts are iterated only once, so that they are keyed and guessed in the same sequence.
+     *
+     * @param timeFormatGuess  the guess to run on a miss
+     * @param texts  a sequence of strings used to guess
+     * @return the timestamp format string guessed, or {@code null} if not guessed
+     */
+    public String guessTimeFormat(final TimeFormatGuess timeFormatGuess, final Iterable<Object> texts) {
+        if (CODE_FINGERPRINT == null) {
+            return timeFormatGuess.guess(texts);
+        }
+        final ArrayList<Object> textList = new ArrayList<>();
+        final Key keyBuilder = this.newKey("timeformat");
+        for (final Object text : texts) {
+            textList.add(text);
+            keyBuilder.with(text.toString());
+        }
+        final String key = keyBuilder.digest();
+
+        final JsonNode cached = this.get(key);
+        if (cached != null) {
+            return cached.isNull() ? null : cached.asText();
+        }
+        final String guessed = timeFormatGuess.guess(textList);
+        this.put(key, JsonNodeFactory.instance.textNode(guessed));
+        return guessed;
+    }
+
+    /**
+     * Reads an entry, and marks it as used recently.
+     *
+     * @return the value of the entry, or {@code null} on a miss
+     */
+    private JsonNode get(final String key) {
+        final Path path = this.directory.resolve(key + ENTRY_SUFFIX);
+        try {
+            final byte[] bytes = Files.readAllBytes(path);
+            final JsonNode entry = MAPPER.readTree(bytes);
+            if (entry == null || !entry.has("value")) {
+                if (Files.deleteIfExists(path)) {  // Broken. It should be rewritten.
+                    this.approximateBytes.addAndGet(-bytes.length);
+                }
+                return null;
+            }
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (final IOException ex) {
+                // It may be evicted by another process in the meantime. The value has been read anyway.
+            }
+            return entry.get("value");
+        } catch (final NoSuchFileException ex) {
+            return null;
+        } catch (final JsonProcessingException ex) {
+            return null;  // Broken. It is overwritten after guessing again.
+        } catch (final IOException ex) {
+            logger.warn("Failed to read a guess cache entry: " + path, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, which replaces the entry of the same key if exists.
+     */
+    void put(final String key, final JsonNode value) {
+        final ObjectNode entry = JsonNodeFactory.instance.objectNode();
+        entry.set("value", value);
+
+        final Path path = this.directory.resolve(key + ENTRY_SUFFIX);
+        Path temporary = null;
+        try {
+            final byte[] bytes = MAPPER.writeValueAsBytes(entry);
+            temporary = Files.createTempFile(this.directory, TEMPORARY_PREFIX, ENTRY_SUFFIX);
+            Files.write(temporary, bytes);
+            final long replacedBytes = sizeOf(path);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+            if (this.approximateBytes.addAndGet(bytes.length - replacedBytes) > this.maxBytes) {
+                this.evict();
+            }
+        } catch (final IOException ex) {
+            logger.warn("Failed to write a guess cache entry in: " + this.directory, ex);
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (final IOException ex) {
+                    // Left to be cleaned up by a later eviction.
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the total size gets down to three quarters of the bound.
+     */
+    private synchronized void evict() throws IOException {
+        final List<Entry> entries = listEntries(this.directory);
+        entries.sort(Comparator.comparingLong((Entry entry) -> entry.lastModified));
+
+        long totalBytes = 0;
+        for (final Entry entry : entries) {
+            totalBytes += entry.size;
+        }
+
+        final long targetBytes = this.maxBytes / 4 * 3;
+        final long staleTemporary = System.currentTimeMillis() - STALE_TEMPORARY_MILLIS;
+        for (final Entry entry : entries) {
+            if (entry.temporary) {
+                if (entry.lastModified < staleTemporary) {  // Left by a process crashed while writing.
+                    Files.deleteIfExists(entry.path);
+                }
+            } else if (totalBytes > targetBytes) {
+                Files.deleteIfExists(entry.path);
+                totalBytes -= entry.size;
+            }
+        }
+        this.approximateBytes.set(totalBytes);
+    }
+
+    /**
+     * Returns the approximate total size of the entries, which is compared with the bound.
+     */
+    long getApproximateBytes() {
+        return this.approximateBytes.get();
+    }
+
+    /**
+     * Returns the size of an entry, or {@code 0} if it does not exist.
+     */
+    private static long sizeOf(final Path path) throws IOException {
+        try {
+            return Files.size(path);
+        } catch (final NoSuchFileException ex) {
+            return 0;
+        }
+    }
+
+    private static List<Entry> listEntries(final Path directory) throws IOException {
+        final ArrayList<Entry> entries = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (final Path path : stream) {
+                final BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (final NoSuchFileException ex) {
+                    continue;  // Evicted by another process in the meantime.
+                }
+                final boolean temporary = path.getFileName().toString().startsWith(TEMPORARY_PREFIX);
+                entries.add(new Entry(path, attributes.size(), attributes.lastModifiedTime().toMillis(), temporary));
+            }
+        }
+        return entries;
+    }
+
+    private ConfigDiff toConfigDiff(final JsonNode json) {
+        final ConfigDiff configDiff = this.configMapperFactory.newConfigDiff();
+        json.fields().forEachRemaining(field -> configDiff.set(field.getKey(), field.getValue()));
+        return configDiff;
+    }
+
+    private static ObjectNode toJson(final DataSource dataSource) {
+        final ObjectNode json = JsonNodeFactory.instance.objectNode();
+        for (final String name : dataSource.getAttributeNames()) {
+            json.set(name, dataSource.get(JsonNode.class, name));
+        }
+        return json;
+    }
+
+    private Key newKey(final String kind) {
+        return new Key().with(FORMAT_VERSION).with(CODE_FINGERPRINT).with(kind);
+    }
+
+    /**
+     * Builds a key by hashing length-prefixed fields, so that different fields never make the same key.
+     */
+    private static final class Key {
+        Key() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 is always available in Java.", ex);
+            }
+        }
+
+        Key with(final int value) {
+            this.digest.update(ByteBuffer.allocate(4).putInt(value).array());
+            return this;
+        }
+
+        Key with(final long value) {
+            this.digest.update(ByteBuffer.allocate(8).putLong(value).array());
+            return this;
+        }
+
+        Key with(final String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.with(bytes.length);
+            this.digest.update(bytes);
+            return this;
+        }
+
+        Key with(final Object value) {
+            if (value == null) {
+                return this.with(-1);
+            }
+            return this.with(value.getClass().getName()).with(value.toString());
+        }
+
+        Key with(final Path file) throws IOException {
+            this.with(Files.size(file));
+            try (final InputStream input = Files.newInputStream(file)) {
+                final byte[] buffer = new byte[8192];
+                for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                    this.digest.update(buffer, 0, read);
+                }
+            }
+            return this;
+        }
+
+        Key with(final Buffer sample) {
+            this.with(sample.limit());
+            this.digest.update(GuessUtil.arrayOf(sample), sample.offset(), sample.limit());
+            return this;
+        }
+
+        String digest() {
+            final StringBuilder builder = new StringBuilder();
+            for (final byte b : this.digest.digest()) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        }
+
+        private final MessageDigest digest;
+    }
+
+    private static final class Entry {
+        Entry(final Path path, final long size, final long lastModified, final boolean temporary) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.temporary = temporary;
+        }
+
+        final Path path;
+        final long size;
+        final long lastModified;
+        final boolean temporary;
+    }
+
+    /**
+     * Fingerprints the library code, which is its version in a release, or the hash of the code it is loaded from.
+     *
+     * @return the fingerprint, or {@code null} if the code cannot be read
+     */
+    private static String fingerprintCode() {
+        final Package libraryPackage = GuessCache.class.getPackage();
+        final String version = (libraryPackage != null) ? libraryPackage.getImplementationVersion() : null;
+        if (version != null && !version.endsWith("-SNAPSHOT")) {
+            return version;
+        }
+        try {
+            final CodeSource codeSource = GuessCache.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null) {
+                logger.warn("GuessCache is disabled as the code of the library is not located.");
+                return null;
+            }
+            final Path location = Paths.get(codeSource.getLocation().toURI());
+            final Key key = new Key();
+            if (!Files.isDirectory(location)) {
+                return key.with(location).digest();  // The jar file.
+            }
+
+            // The class files of this package, in the order of their names.
+            final ArrayList<Path> classFiles = new ArrayList<>();
+            try (final Stream<Path> paths = Files.walk(location.resolve(GuessCache.class.getName().replace('.', '/')).getParent())) {
+                paths.filter(Files::isRegularFile).forEach(classFiles::add);
+            }
+            Collections.sort(classFiles);
+            for (final Path classFile : classFiles) {
+                key.with(location.relativize(classFile).toString()).with(classFile);
+            }
+            return key.digest();
+        } catch (final IOException | URISyntaxException | RuntimeException ex) {
+            logger.warn("GuessCache is disabled as the code of the library cannot be read.", ex);
+            return null;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(GuessCache.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String FORMAT_VERSION = "1";
+    private static final String CODE_FINGERPRINT = fingerprintCode();  // null to disable the cache
+
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String TEMPORARY_PREFIX = ".tmp-";
+    private static final long STALE_TEMPORARY_MILLIS = 60L * 60L * 1000L;
+
+    private final ConfigMapperFactory configMapperFactory;
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong approximateBytes;
+}
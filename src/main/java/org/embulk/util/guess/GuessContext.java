@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.util.List;
+import org.embulk.config.ConfigSource;
+import org.embulk.spi.Buffer;
+import org.embulk.util.config.ConfigMapperFactory;
+
+/**
+ * Caches what is guessed and decoded from one sample with one parser config, to be shared by guess plugins.
+ *
+ * <p>Guess plugins often call {@link LineGuessHelper#toLines} or {@link TextGuessHelper#toText} on the same sample one by
+ * one, and each call decodes the sample, and may detect the character set again. A context computes each of them lazily
+ * on its first request, and returns the same result for later requests.
+ *
+ * <p>A character set is detected at most once unless {@code parser.charset} is configured. The lines and the text are
+ * the same as {@link LineGuessHelper#toLines} and {@link TextGuessHelper#toText} return with the character set detected.
+ *
+ * <p>It is not thread-safe. The sample and the config must not be modified while the context is used.
+ */
+public final class GuessContext {
+    private GuessContext(final ConfigMapperFactory configMapperFactory, final ConfigSource config, final Buffer sample) {
+        this.configMapperFactory = configMapperFactory;
+        this.config = config;
+        this.sample = sample;
+    }
+
+    /**
+     * Creates a context for the sample and the config.
+     *
+     * @param configMapperFactory  the factory to create {@link org.embulk.config.ConfigDiff}
+     * @param config  a partial config which guess plugins start guessing from
+     * @param sample  the byte sequence to be guessed
+     * @return {@link GuessContext} which computes nothing until requested
+     */
+    public static GuessContext of(final ConfigMapperFactory configMapperFactory, final ConfigSource config, final Buffer sample) {
+        return new GuessContext(configMapperFactory, config, sample);
+    }
+
+    /**
+     * Returns the sample of the context.
+     *
+     * @return the sample
+     */
+    public Buffer getSample() {
+        return this.sample;
+    }
+
+    /**
+     * Returns the name of the character set, which is configured in {@code parser.charset}, or detected from the sample.
+     *
+     * @return the name of the character set
+     */
+    public String getCharset() {
+        if (this.charset == null) {
+            final ConfigSource parserConfig = this.config.getNestedOrGetEmpty("parser");
+            if (parserConfig.has("charset")) {
+                this.charset = parserConfig.get(String.class, "charset");
+            } else {
+                this.charset = CharsetGuess.of(this.configMapperFactory).guessCharsetName(this.sample);
+            }
+        }
+        return this.charset;
+    }
+
+    /**
+     * Returns the preamble guessed by {@link PreambleGuess}, with the character set of {@link #getCharset()}.
+     *
+     * @return {@link Preamble} guessed
+     * @throws IllegalArgumentException  if {@code parser.newline} or {@code parser.line_delimiter_recognized} is invalid
+     */
+    public Preamble getPreamble() {
+        if (this.preamble == null) {
+            this.preamble = PreambleGuess.of(this.configMapperFactory).guess(this.configWithCharset(), this.sample);
+        }
+        return this.preamble;
+    }
+
+    /**
+     * Returns the lines as {@link LineGuessHelper#toLines} does.
+     *
+     * @return the lines, or {@code null} if the config is invalid
+     */
+    public List<String> getLines() {
+        if (!this.linesComputed) {
+            this.lines = LineGuessHelper.of(this.configMapperFactory).toLines(this.configWithCharset(), this.sample);
+            this.linesComputed = true;
+        }
+        return this.lines;
+    }
+
+    /**
+     * Returns the lines indexed as {@link LineGuessHelper#toLineIndex} does.
+     *
+     * @return {@link LineIndex} of the lines, or {@code null} if the config is invalid
+     */
+    public LineIndex getLineIndex() {
+        if (!this.lineIndexComputed) {
+            this.lineIndex = LineGuessHelper.of(this.configMapperFactory).toLineIndex(this.configWithCharset(), this.sample);
+            this.lineIndexComputed = true;
+        }
+        return this.lineIndex;
+    }
+
+    /**
+     * Returns the text as {@link TextGuessHelper#toText} does.
+     *
+     * @return the text, or {@code null} if the config is invalid
+     */
+    public String getText() {
+        if (!this.textComputed) {
+            this.text = TextGuessHelper.of(this.configMapperFactory).toText(this.configWithCharset(), this.sample);
+            this.textComputed = true;
+        }
+        return this.text;
+    }
+
+    /**
+     * Returns a copy of the config whose {@code parser.charset} is filled so that the helpers never detect it again.
+     */
+    private ConfigSource configWithCharset() {
+        if (this.configWithCharset == null) {
+            final ConfigSource copied = this.config.deepCopy();
+            copied.getNestedOrSetEmpty("parser").set("charset", this.getCharset());
+            this.configWithCharset = copied;
+        }
+        return this.configWithCharset;
+    }
+
+    private final ConfigMapperFactory configMapperFactory;
+    private final ConfigSource config;
+    private final Buffer sample;
+
+    private String charset;
+    private ConfigSource configWithCharset;
+    private Preamble preamble;
+    private List<String> lines;
+    private boolean linesComputed;
+    private LineIndex lineIndex;
+    private boolean lineIndexComputed;
+    private String text;
+    private boolean textComputed;
+}
@@ -16,7 +16,10 @@
 
 package org.embulk.util.guess;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
@@ -28,20 +31,65 @@ final class GuessUtil {
         // No instantiation.
     }
 
+    /**
+     * Returns the array behind {@link org.embulk.spi.Buffer} to read a sample without copying it.
+     *
+     * <p>The sample is in the range from {@link org.embulk.spi.Buffer#offset()} with the length of
+     * {@link org.embulk.spi.Buffer#limit()} in the array. The array must not be modified.
+     */
+    @SuppressWarnings("deprecation")  // Buffer#array() is deprecated, but the only way to read it without copying.
+    static byte[] arrayOf(final Buffer buffer) {
+        return buffer.array();
+    }
+
+    /**
+     * Reads eight bytes from the array as a big-endian {@code long}, in the same way as {@link java.nio.ByteBuffer#getLong(int)}.
+     *
+     * <p>{@link java.nio.ByteBuffer#getLong(int)} on a heap buffer is not a single eight-byte read in Java 8. It assembles
+     * the bytes one by one through {@code java.nio.Bits} as this method does, but behind the calls into the buffer.
+     */
+    static long readLong(final byte[] array, final int index) {
+        return ((array[index] & 0xffL) << 56)
+                | ((array[index + 1] & 0xffL) << 48)
+                | ((array[index + 2] & 0xffL) << 40)
+                | ((array[index + 3] & 0xffL) << 32)
+                | ((array[index + 4] & 0xffL) << 24)
+                | ((array[index + 5] & 0xffL) << 16)
+                | ((array[index + 6] & 0xffL) << 8)
+                | (array[index + 7] & 0xffL);
+    }
+
     static Charset getCharset(final ConfigSource parserConfig, final ConfigMapperFactory configMapperFactory, final Buffer sample) {
+        return getCharset(parserConfig, configMapperFactory, Collections.singletonList(sample));
+    }
+
+    /**
+     * Gets a charset configured, or guesses it from a sample in {@link org.embulk.spi.Buffer}s.
+     *
+     * <p>A sample in multiple {@link org.embulk.spi.Buffer}s is guessed without concatenating them, in the same way as
+     * the concatenated sample in a single {@link org.embulk.spi.Buffer}.
+     */
+    static Charset getCharset(final ConfigSource parserConfig, final ConfigMapperFactory configMapperFactory, final List<? extends Buffer> sample) {
         final String charsetString;
         if (parserConfig.has("charset")) {
             charsetString = parserConfig.get(String.class, "charset", "utf-8");
         } else {
-            charsetString = CharsetGuess.of(configMapperFactory)
-                .guess(sample)
-                .getNestedOrGetEmpty("parser")
-                .get(String.class, "charset", "utf-8");
+            charsetString = CharsetGuess.of(configMapperFactory).guessCharsetNameOfChunks(sample);
         }
 
         return Charset.forName(charsetString);
     }
 
+    /**
+     * Gets a charset configured, or guesses it from a sample mapped from a file as {@link CharsetGuess#guess(java.nio.file.Path, int)} does.
+     */
+    static Charset getCharset(final ConfigSource parserConfig, final ConfigMapperFactory configMapperFactory, final ByteBuffer mapped) {
+        if (parserConfig.has("charset")) {
+            return Charset.forName(parserConfig.get(String.class, "charset", "utf-8"));
+        }
+        return Charset.forName(CharsetGuess.of(configMapperFactory).guessCharsetName(mapped));
+    }
+
     static LineDelimiter getLineDelimiter(final ConfigSource parserConfig) {
         final String lineDelimiterString = parserConfig.get(String.class, "line_delimiter_recognized", null);
         if (lineDelimiterString == null) {
@@ -59,23 +107,32 @@ final class GuessUtil {
     }
 
     static boolean endsWith(final Buffer buffer, final Newline target) {
+        return endsWith(Collections.singletonList(buffer), target);
+    }
+
+    /**
+     * Tests if a sample in {@link org.embulk.spi.Buffer}s ends with the newline, even across {@link org.embulk.spi.Buffer}s.
+     */
+    static boolean endsWith(final List<? extends Buffer> buffers, final Newline target) {
+        // The last two bytes of the whole sample, aligned to the end.
+        final byte[] last = new byte[2];
+        int found = 0;
+        for (int k = buffers.size() - 1; k >= 0 && found < 2; k--) {
+            final Buffer buffer = buffers.get(k);
+            final byte[] array = arrayOf(buffer);
+            for (int i = buffer.limit() - 1; i >= 0 && found < 2; i--) {
+                last[1 - found] = array[buffer.offset() + i];
+                found++;
+            }
+        }
+
         switch (target) {
             case CR:
             case LF:
-                if (buffer.offset() + buffer.limit() - 1 >= 0) {
-                    final byte[] last = new byte[1];
-                    buffer.getBytes(buffer.limit() - 1, last, 0, 1);
-                    return ((char) last[0]) == target.getFirstCharCode();
-                }
-                return false;
+                return found >= 1 && ((char) last[1]) == target.getFirstCharCode();
 
             case CRLF:
-                if (buffer.offset() + buffer.limit() - 2 >= 0) {
-                    final byte[] last = new byte[2];
-                    buffer.getBytes(buffer.limit() - 2, last, 0, 2);
-                    return ((char) last[0]) == target.getFirstCharCode() && ((char) last[1]) == target.getSecondCharCode();
-                }
-                return false;
+                return found >= 2 && ((char) last[0]) == target.getFirstCharCode() && ((char) last[1]) == target.getSecondCharCode();
 
             default:
                 return false;
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import org.embulk.config.ConfigDiff;
+import org.embulk.spi.Buffer;
+
+/**
+ * Guesses a character set from a sample which arrives in {@link org.embulk.spi.Buffer} chunks, started by
+ * {@link CharsetGuess#startIncremental()}.
+ *
+ * <p>The chunks are never concatenated. The encoding schemes are counted chunk by chunk, carrying over a character
+ * split between chunks, so that the guess is the same as {@link CharsetGuess#guess(Buffer)} for the concatenated
+ * sample up to 64 KiB. From a larger sample, only its first 64 KiB are counted, while {@link CharsetGuess#guess(Buffer)}
+ * samples windows over the whole.
+ *
+ * <p>It is not thread-safe. It holds a pooled detector until {@link #finish()} or {@link #close()}.
+ */
+public final class IncrementalCharsetGuess implements AutoCloseable {
+    IncrementalCharsetGuess(final CharsetGuess charsetGuess, final CharsetDetectorPool detectorPool, final CharsetGuessListener listener) {
+        this.charsetGuess = charsetGuess;
+        this.detectorPool = detectorPool;
+        this.detector = detectorPool.acquire().setListener(listener).startText();
+    }
+
+    /**
+     * Feeds the next chunk of the sample.
+     *
+     * <p>The chunk is not referred after this call. It may be reused by the caller.
+     *
+     * @param chunk  the next chunk of the sample
+     * @return {@code true} if more chunks can still change the guess, or {@code false} if more chunks are just ignored
+     * @throws IllegalStateException  if it is already finished
+     */
+    public boolean update(final Buffer chunk) {
+        return this.detectorInUse().appendText(GuessUtil.arrayOf(chunk), chunk.offset(), chunk.limit());
+    }
+
+    /**
+     * Guesses a character set from the chunks fed so far.
+     *
+     * @return {@link org.embulk.config.ConfigDiff} guessed, in the same form as {@link CharsetGuess#guess(Buffer)}
+     * @throws IllegalStateException  if it is already finished
+     */
+    public ConfigDiff currentBest() {
+        return this.charsetGuess.toConfigDiff(this.detectorInUse().detect());
+    }
+
+    /**
+     * Guesses a character set from all the chunks fed, and finishes the guess.
+     *
+     * @return {@link org.embulk.config.ConfigDiff} guessed, in the same form as {@link CharsetGuess#guess(Buffer)}
+     * @throws IllegalStateException  if it is already finished
+     */
+    public ConfigDiff finish() {
+        try {
+            return this.currentBest();
+        } finally {
+            this.close();
+        }
+    }
+
+    /**
+     * Finishes the guess without guessing. It does nothing if it is already finished.
+     */
+    @Override
+    public void close() {
+        if (this.detector != null) {
+            this.detectorPool.release(this.detector);
+            this.detector = null;
+        }
+    }
+
+    private CharsetDetector detectorInUse() {
+        if (this.detector == null) {
+            throw new IllegalStateException("IncrementalCharsetGuess is already finished.");
+        }
+        return this.detector;
+    }
+
+    private final CharsetGuess charsetGuess;
+    private final CharsetDetectorPool detectorPool;
+
+    private CharsetDetector detector;
+}
@@ -16,6 +16,10 @@
 
 package org.embulk.util.guess;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,6 +51,21 @@ public final class LineGuessHelper {
     }
 
     public final List<String> toLines(final ConfigSource config, final Buffer sample) {
+        return this.toLines(config, Collections.singletonList(sample));
+    }
+
+    /**
+     * Converts a sample in {@link org.embulk.spi.Buffer}s to lines, without concatenating the {@link org.embulk.spi.Buffer}s.
+     *
+     * <p>The lines are decoded across the boundaries of the {@link org.embulk.spi.Buffer}s. A character set is guessed from
+     * the sample unless {@code parser.charset} is configured. The guess is the same as from the sample in a single
+     * {@link org.embulk.spi.Buffer}, as only the windows to be sampled are copied from a sample larger than 64 KiB.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param sample  the byte sequence to be converted in {@link org.embulk.spi.Buffer}s
+     * @return the lines, or {@code null} if the config is invalid
+     */
+    public final List<String> toLines(final ConfigSource config, final List<Buffer> sample) {
         final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
 
         final Charset charset;
@@ -73,11 +92,7 @@ public final class LineGuessHelper {
             return null;
         }
 
-        final ArrayList<Buffer> listBuffer = new ArrayList<>();
-        listBuffer.add(sample);
-        final ArrayList<ArrayList<Buffer>> listListBuffer = new ArrayList<>();
-        listListBuffer.add(listBuffer);
-        final LineDecoder decoder = LineDecoder.of(new ListFileInput(listListBuffer), charset, lineDelimiter);
+        final LineDecoder decoder = LineDecoder.of(new ListFileInput(Collections.singletonList(sample)), charset, lineDelimiter);
 
         final boolean endsWithNewline = GuessUtil.endsWith(sample, newline);
 
@@ -98,6 +113,146 @@ public final class LineGuessHelper {
         return Collections.unmodifiableList(sampleLines);
     }
 
+    /**
+     * Indexes the lines in {@link org.embulk.spi.Buffer}, instead of converting them to {@link java.lang.String}s.
+     *
+     * <p>The lines are the same as {@link #toLines}, but they are indexed by their byte offsets without decoding the sample.
+     * Each line is decoded lazily only when it is read through {@link LineIndex#getLine(int)}. The newline at the end of
+     * the sample is compared in code units of the charset, and the byte order mark at the beginning is excluded from
+     * the first line unless the charset is {@code "UTF-16BE"} or {@code "UTF-16LE"}, as {@link #toLines} excludes it.
+     *
+     * <p>The sample is referred by the index, not copied.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline} to split the lines
+     * @param sample  the byte sequence to be indexed
+     * @return {@link LineIndex} of the lines, or {@code null} if the config is invalid
+     */
+    public final LineIndex toLineIndex(final ConfigSource config, final Buffer sample) {
+        final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
+
+        final Charset charset;
+        final LineDelimiter lineDelimiter;
+        final Newline newline;
+        try {
+            charset = GuessUtil.getCharset(parserConfig, this.configMapperFactory, sample);
+            lineDelimiter = GuessUtil.getLineDelimiter(parserConfig);
+            newline = GuessUtil.getNewline(parserConfig);
+        } catch (final IllegalArgumentException ex) {
+            logger.warn(ex.getMessage(), ex);
+            return null;
+        }
+
+        return indexLines(ByteBuffer.wrap(GuessUtil.arrayOf(sample)), sample.offset(), sample.limit(), charset, lineDelimiter, newline);
+    }
+
+    /**
+     * Converts the head of a file to lines, which is mapped into memory instead of being copied into the heap.
+     *
+     * <p>The lines are indexed as {@link #toLineIndex(ConfigSource, Path, int)} does, and then decoded. A character set
+     * is guessed from the head as {@link CharsetGuess#guess(Path, int)} does unless {@code parser.charset} is configured.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param file  the file to be converted
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return the lines, or {@code null} if the config is invalid
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public final List<String> toLines(final ConfigSource config, final Path file, final int windowBytes) throws IOException {
+        return decodeLines(this.toLineIndex(config, file, windowBytes));
+    }
+
+    /**
+     * Converts the head of a file to lines as {@link #toLines(ConfigSource, Path, int)} does, through an open channel.
+     *
+     * <p>The head is mapped from the beginning of the file regardless of the position of the channel. The channel is not closed.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param channel  the channel of the file to be converted
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return the lines, or {@code null} if the config is invalid
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public final List<String> toLines(final ConfigSource config, final FileChannel channel, final int windowBytes) throws IOException {
+        return decodeLines(this.toLineIndex(config, channel, windowBytes));
+    }
+
+    /**
+     * Indexes the lines in the head of a file as {@link #toLineIndex(ConfigSource, Buffer)} does, which is mapped into
+     * memory instead of being copied into the heap.
+     *
+     * <p>The index refers to the mapped bytes. The lines are read through the page cache of the OS, not from the heap.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline} to split the lines
+     * @param file  the file to be indexed
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return {@link LineIndex} of the lines, or {@code null} if the config is invalid
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public final LineIndex toLineIndex(final ConfigSource config, final Path file, final int windowBytes) throws IOException {
+        return this.toLineIndex(config, MappedSample.map(file, windowBytes));
+    }
+
+    /**
+     * Indexes the lines in the head of a file as {@link #toLineIndex(ConfigSource, Path, int)} does, through an open channel.
+     *
+     * <p>The head is mapped from the beginning of the file regardless of the position of the channel. The channel is not closed.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline} to split the lines
+     * @param channel  the channel of the file to be indexed
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return {@link LineIndex} of the lines, or {@code null} if the config is invalid
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public final LineIndex toLineIndex(final ConfigSource config, final FileChannel channel, final int windowBytes) throws IOException {
+        return this.toLineIndex(config, MappedSample.map(channel, windowBytes));
+    }
+
+    private LineIndex toLineIndex(final ConfigSource config, final ByteBuffer mapped) {
+        final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
+
+        final Charset charset;
+        final LineDelimiter lineDelimiter;
+        final Newline newline;
+        try {
+            charset = GuessUtil.getCharset(parserConfig, this.configMapperFactory, mapped);
+            lineDelimiter = GuessUtil.getLineDelimiter(parserConfig);
+            newline = GuessUtil.getNewline(parserConfig);
+        } catch (final IllegalArgumentException ex) {
+            logger.warn(ex.getMessage(), ex);
+            return null;
+        }
+
+        return indexLines(mapped, 0, mapped.limit(), charset, lineDelimiter, newline);
+    }
+
+    private static LineIndex indexLines(
+            final ByteBuffer bytes,
+            final int offset,
+            final int length,
+            final Charset charset,
+            final LineDelimiter lineDelimiter,
+            final Newline newline) {
+        final CodeUnits units = CodeUnits.of(charset.name(), bytes, offset, length);
+        final LineIndex.Builder lines = new LineIndex.Builder(units, lineDelimiter, units.skippedByteOrderMarkLength(charset.name(), bytes, offset, length));
+        NewlineGuess.NewlineCounts.count(bytes, offset, length, units, lines);
+        return lines.build(bytes, offset, length, charset, units.endsWith(bytes, offset, length, newline.getString()));
+    }
+
+    private static List<String> decodeLines(final LineIndex index) {
+        if (index == null) {
+            return null;
+        }
+        final ArrayList<String> lines = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            lines.add(index.getLine(i).toString());
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
     private static final Logger logger = LoggerFactory.getLogger(LineGuessHelper.class);
 
     private final ConfigMapperFactory configMapperFactory;
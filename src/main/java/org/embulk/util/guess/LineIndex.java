@@ -0,0 +1,308 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.embulk.util.text.LineDelimiter;
+
+/**
+ * Indexes the lines in a sample by their byte offsets, without decoding the sample.
+ *
+ * <p>The offsets are relative to the beginning of the sample. A line spans from its start to its end, which excludes
+ * its newline. The first line starts after the byte order mark if the sample starts with one, except in
+ * {@code "UTF-16BE"} and {@code "UTF-16LE"}, in which the first line keeps it as U+FEFF as {@link LineGuessHelper#toLines} does.
+ *
+ * <p>The lines are split in the same way as {@link LineGuessHelper#toLines}. They are split at any of CR, LF, and CRLF
+ * unless {@code line_delimiter_recognized} is configured. The last line is dropped as a partial line unless the sample
+ * ends with the newline, but the newline is compared in code units of the charset, not in bytes.
+ *
+ * <p>The lines are also available as {@link java.lang.CharSequence} views over the sample by {@link #getLine(int)}.
+ * The sample is referred, not copied, so the sample must not be modified nor released while the views are used.
+ * The sample may be a file mapped into memory.
+ */
+public final class LineIndex {
+    private LineIndex(final int[] bounds, final int size, final ByteBuffer bytes, final int offset, final Charset charset) {
+        this.bounds = bounds;
+        this.size = size;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.charset = charset;
+        this.asciiCompatible = charset != null && ASCII_COMPATIBLE_CHARSETS.contains(charset.name());
+    }
+
+    /**
+     * Returns the number of the lines.
+     *
+     * @return the number of the lines
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the byte offset where the line starts.
+     *
+     * @param line  the index of the line from 0
+     * @return the byte offset relative to the beginning of the sample
+     * @throws IndexOutOfBoundsException  if the line is out of the range
+     */
+    public int getStart(final int line) {
+        this.checkLine(line);
+        return this.bounds[line * 2];
+    }
+
+    /**
+     * Returns the byte offset where the line ends, which is the offset of its newline.
+     *
+     * @param line  the index of the line from 0
+     * @return the byte offset relative to the beginning of the sample
+     * @throws IndexOutOfBoundsException  if the line is out of the range
+     */
+    public int getEnd(final int line) {
+        this.checkLine(line);
+        return this.bounds[line * 2 + 1];
+    }
+
+    /**
+     * Returns a view of the line, which is decoded lazily.
+     *
+     * <p>A line only of ASCII bytes in an ASCII-compatible charset, such as UTF-8 and Shift_JIS, is read directly from
+     * the sample bytes, and never decoded into {@link java.lang.String} until {@link java.lang.Object#toString()}.
+     * The other lines are decoded on their first access.
+     *
+     * @param line  the index of the line from 0
+     * @return {@link java.lang.CharSequence} of the line
+     * @throws IndexOutOfBoundsException  if the line is out of the range
+     * @throws IllegalStateException  if the charset of the sample is unknown
+     */
+    public CharSequence getLine(final int line) {
+        this.checkLine(line);
+        if (this.charset == null) {
+            throw new IllegalStateException("Lines cannot be decoded in an unknown charset.");
+        }
+        final int start = this.offset + this.bounds[line * 2];
+        final int end = this.offset + this.bounds[line * 2 + 1];
+        if (this.asciiCompatible && isAscii(this.bytes, start, end)) {
+            return new AsciiLine(this.bytes, start, end);
+        }
+        return new DecodedLine(this.bytes, start, end, this.charset);
+    }
+
+    private static boolean isAscii(final ByteBuffer bytes, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a view of the bytes from {@code start} to {@code end}, without moving the position of the bytes.
+     */
+    private static ByteBuffer slice(final ByteBuffer bytes, final int start, final int end) {
+        final ByteBuffer sliced = bytes.duplicate();
+        sliced.limit(end);
+        sliced.position(start);
+        return sliced;
+    }
+
+    private void checkLine(final int line) {
+        if (line < 0 || line >= this.size) {
+            throw new IndexOutOfBoundsException("Line " + line + " is out of " + this.size + " lines.");
+        }
+    }
+
+    /**
+     * A line only of ASCII bytes, which are read as characters as they are.
+     */
+    private static final class AsciiLine implements CharSequence {
+        AsciiLine(final ByteBuffer bytes, final int start, final int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= this.end - this.start) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of the length " + (this.end - this.start) + ".");
+            }
+            return (char) this.bytes.get(this.start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > this.end - this.start || start > end) {
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is out of the length " + (this.end - this.start) + ".");
+            }
+            return new AsciiLine(this.bytes, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            return StandardCharsets.US_ASCII.decode(slice(this.bytes, this.start, this.end)).toString();
+        }
+
+        private final ByteBuffer bytes;
+        private final int start;
+        private final int end;
+    }
+
+    /**
+     * A line decoded on its first access.
+     */
+    private static final class DecodedLine implements CharSequence {
+        DecodedLine(final ByteBuffer bytes, final int start, final int end, final Charset charset) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+            this.charset = charset;
+        }
+
+        @Override
+        public int length() {
+            return this.decoded().length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return this.decoded().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return this.decoded().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return this.decoded();
+        }
+
+        private String decoded() {
+            if (this.decoded == null) {
+                this.decoded = this.charset.decode(slice(this.bytes, this.start, this.end)).toString();
+            }
+            return this.decoded;
+        }
+
+        private final ByteBuffer bytes;
+        private final int start;
+        private final int end;
+        private final Charset charset;
+
+        private String decoded;
+    }
+
+    /**
+     * Builds {@link LineIndex} from each CR and LF found while the newlines are counted.
+     */
+    static final class Builder {
+        Builder(final CodeUnits units, final LineDelimiter lineDelimiter, final int firstLineStart) {
+            this.units = units;
+            this.width = units.width;
+            this.lineDelimiter = lineDelimiter;
+            this.bounds = new int[32];
+            this.size = 0;
+            this.lineStart = firstLineStart;
+        }
+
+        void cr(final int index) {
+            if (this.lineDelimiter == null || this.lineDelimiter == LineDelimiter.CR) {
+                this.add(index);
+            }
+        }
+
+        void lf(final int index, final boolean afterCr) {
+            if (this.lineDelimiter == null) {
+                if (afterCr) {
+                    this.lineStart = index + this.width;  // The line has ended at CR of CRLF.
+                } else {
+                    this.add(index);
+                }
+            } else if (this.lineDelimiter == LineDelimiter.LF) {
+                this.add(index);
+            } else if (this.lineDelimiter == LineDelimiter.CRLF && afterCr) {
+                this.add(index - this.width);
+                this.lineStart = index + this.width;
+            }
+        }
+
+        /**
+         * Builds the index for the sample of {@code length} bytes from the absolute index {@code offset} in the bytes.
+         *
+         * @param charset  the charset to decode the lines, or {@code null} if unknown, which is replaced with the one in
+         *     the byte order of the code units for {@code "UTF-16"} and {@code "UTF-32"}
+         * @param endsWithNewline  {@code true} to keep the last line which ends at the end of the sample
+         */
+        LineIndex build(final ByteBuffer bytes, final int offset, final int length, final Charset charset, final boolean endsWithNewline) {
+            int size = this.size;
+            if (size > 0 && this.lineStart >= length && !endsWithNewline) {
+                size--;  // The last line is partial.
+            }
+            return new LineIndex(this.bounds, size, bytes, offset, (charset == null) ? null : this.units.charsetOfParts(charset));
+        }
+
+        private void add(final int index) {
+            if (this.size * 2 + 2 > this.bounds.length) {
+                this.bounds = Arrays.copyOf(this.bounds, this.bounds.length * 2);
+            }
+            this.bounds[this.size * 2] = this.lineStart;
+            this.bounds[this.size * 2 + 1] = index;
+            this.size++;
+            this.lineStart = index + this.width;
+        }
+
+        private final CodeUnits units;
+        private final int width;
+        private final LineDelimiter lineDelimiter;
+
+        private int[] bounds;  // The start and the end of each line in turn.
+        private int size;
+        private int lineStart;
+    }
+
+    // Charsets in which a slice only of bytes from 0x00 to 0x7F decodes to the same ASCII characters.
+    //
+    // It does not mean that every byte from 0x00 to 0x7F is an ASCII character. A trailing byte of Shift_JIS, windows-31j,
+    // Big5, GBK, and GB18030 goes down to 0x40, such as 0x5C in "ソ" of Shift_JIS. Only CR and LF never appear as trailing
+    // bytes, so that lines are split correctly, and only a line all in ASCII bytes skips decoding by the isAscii check.
+    // The check must not be dropped for these charsets.
+    private static final Set<String> ASCII_COMPATIBLE_CHARSETS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "US-ASCII", "UTF-8", "ISO-8859-1", "ISO-8859-2", "ISO-8859-5", "ISO-8859-6", "ISO-8859-7", "ISO-8859-8", "ISO-8859-9",
+            "windows-1250", "windows-1251", "windows-1252", "windows-1253", "windows-1254", "windows-1255", "windows-1256",
+            "KOI8-R", "Shift_JIS", "windows-31j", "EUC-JP", "EUC-KR", "GB18030", "GBK", "Big5")));
+
+    private final int[] bounds;  // The start and the end of each line in turn.
+    private final int size;
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final Charset charset;  // null if unknown
+    private final boolean asciiCompatible;
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Maps the head of a file into {@link java.nio.ByteBuffer} to be guessed without copying it into the heap.
+ *
+ * <p>The buffer mapped is read-only, and starts at position 0 with its limit at the length of the head. It stays valid
+ * after the channel is closed, until it is garbage-collected.
+ */
+final class MappedSample {
+    private MappedSample() {
+        // No instantiation.
+    }
+
+    /**
+     * Maps the head of the file up to the window.
+     *
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    static ByteBuffer map(final Path file, final int windowBytes) throws IOException {
+        checkWindow(windowBytes);
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return map(channel, windowBytes);
+        }
+    }
+
+    /**
+     * Maps the head of the file of the channel up to the window, regardless of the position of the channel.
+     *
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    static ByteBuffer map(final FileChannel channel, final int windowBytes) throws IOException {
+        return map(channel, 0, windowBytes);
+    }
+
+    /**
+     * Maps the window from the position of the file of the channel, which is cut at the end of the file.
+     *
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    static ByteBuffer map(final FileChannel channel, final long position, final int windowBytes) throws IOException {
+        checkWindow(windowBytes);
+        final long length = Math.min(channel.size() - position, (long) windowBytes);
+        if (length <= 0) {
+            return EMPTY;  // Some platforms fail to map an empty region.
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    private static void checkWindow(final int windowBytes) {
+        if (windowBytes < 0) {
+            throw new IllegalArgumentException("windowBytes is negative: " + windowBytes);
+        }
+    }
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+}
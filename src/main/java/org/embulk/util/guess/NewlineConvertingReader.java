@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.io.IOException;
+import java.io.Reader;
+import org.embulk.util.text.LineDelimiter;
+import org.embulk.util.text.Newline;
+
+/**
+ * Converts the line delimiters in characters from another {@link java.io.Reader} into a newline on the fly.
+ *
+ * <p>The characters are the same as {@link TextGuessHelper#toText} joins the lines from {@code LineDecoder}. The lines are
+ * split at any of CR, LF, and CRLF, or only at the line delimiter if specified. They are joined with the newline, and the
+ * line delimiter at the end is dropped.
+ *
+ * <p>A line delimiter is held until any character follows, so that the last one is never converted.
+ */
+final class NewlineConvertingReader extends Reader {
+    NewlineConvertingReader(final Reader in, final LineDelimiter lineDelimiter, final Newline newline) {
+        this.in = in;
+        this.lineDelimiter = lineDelimiter;
+        this.newline = newline.getString();
+        this.buffer = new char[BUFFER_SIZE];
+        this.position = 0;
+        this.limit = 0;
+        this.newlineIndex = this.newline.length();
+        this.held = -1;
+        this.delimiterPending = false;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > cbuf.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int n = 0;
+        while (n < len) {
+            if (this.newlineIndex < this.newline.length()) {
+                cbuf[off + n++] = this.newline.charAt(this.newlineIndex++);
+                continue;
+            }
+            if (this.held >= 0) {
+                cbuf[off + n++] = (char) this.held;
+                this.held = -1;
+                continue;
+            }
+
+            final int c = this.next();
+            if (c < 0) {
+                break;  // The pending line delimiter at the end is dropped.
+            }
+            final boolean delimiter = this.consumeDelimiter(c);
+            if (this.delimiterPending) {
+                // Another line follows the pending line delimiter.
+                this.newlineIndex = 0;
+                this.delimiterPending = delimiter;
+                if (!delimiter) {
+                    this.held = c;
+                }
+            } else if (delimiter) {
+                this.delimiterPending = true;
+            } else {
+                cbuf[off + n++] = (char) c;
+            }
+        }
+        return (n == 0) ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Tests if the character starts a line delimiter, and consumes the rest of the line delimiter if so.
+     */
+    private boolean consumeDelimiter(final int c) throws IOException {
+        if (this.lineDelimiter == null) {
+            if (c == '\r') {
+                if (this.peek() == '\n') {
+                    this.next();
+                }
+                return true;
+            }
+            return c == '\n';
+        }
+
+        switch (this.lineDelimiter) {
+            case CR:
+                return c == '\r';
+            case LF:
+                return c == '\n';
+            case CRLF:
+                if (c == '\r' && this.peek() == '\n') {
+                    this.next();
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private int next() throws IOException {
+        if (this.position >= this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position++];
+    }
+
+    private int peek() throws IOException {
+        if (this.position >= this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position];
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = this.in.read(this.buffer, 0, this.buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        this.position = 0;
+        this.limit = read;
+        return true;
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final LineDelimiter lineDelimiter;
+    private final String newline;
+    private final char[] buffer;
+
+    private int position;
+    private int limit;
+    private int newlineIndex;  // The index of the newline being written, or its length if not being written.
+    private int held;  // The character to be written after the newline, or -1.
+    private boolean delimiterPending;
+}
@@ -16,10 +16,16 @@
 
 package org.embulk.util.guess;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
 import org.embulk.config.ConfigDiff;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.text.Newline;
 
 /**
  * Guesses a newline from {@link org.embulk.spi.Buffer}.
@@ -41,56 +47,241 @@ public final class NewlineGuess {
     /**
      * Guesses a newline from {@link org.embulk.spi.Buffer}.
      *
+     * <p>Newlines are counted in code units of {@code parser.charset} without decoding the sample. For example, only
+     * {@code 0A 00} is counted as LF in UTF-16LE, not {@code 0A} in other code units. The byte order of {@code "UTF-16"}
+     * and {@code "UTF-32"} is taken from the byte order mark, or big endian without it. Bytes are counted as they are in
+     * the other charsets.
+     *
      * @param config  a partial config which it starts guessing from
      * @param sample  the byte sequence to be guessed
      * @return {@link org.embulk.config.ConfigDiff} guessed
      */
     public ConfigDiff guess(final ConfigSource config, final Buffer sample) {
-        if (!config.getNestedOrGetEmpty("parser").has("charset")) {
+        final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
+        if (!parserConfig.has("charset")) {
             return this.charsetGuess.guess(sample);
         }
 
-        final int sampleLength = sample.limit();
-        final byte[] sampleArray = new byte[sampleLength];
-        sample.getBytes(0, sampleArray, 0, sampleLength);
+        final NewlineCounts counts = NewlineCounts.count(
+                GuessUtil.arrayOf(sample), sample.offset(), sample.limit(), parserConfig.get(String.class, "charset"));
+        return this.newConfigDiff(counts.toNewline());
+    }
 
-        final int crCount = count(sampleArray, CR);
-        final int lfCount = count(sampleArray, LF);
-        final int crlfCount = count(sampleArray, CRLF);
+    /**
+     * Guesses a newline from the head of a file, which is mapped into memory instead of being copied into the heap.
+     *
+     * <p>Newlines are counted as {@link #guess(ConfigSource, Buffer)} does, directly in the mapped bytes. A character set
+     * is guessed as {@link CharsetGuess#guess(Path, int)} does if {@code parser.charset} is not configured.
+     *
+     * @param config  a partial config which it starts guessing from
+     * @param file  the file to be guessed
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public ConfigDiff guess(final ConfigSource config, final Path file, final int windowBytes) throws IOException {
+        if (!config.getNestedOrGetEmpty("parser").has("charset")) {
+            return this.charsetGuess.guess(file, windowBytes);
+        }
+        return this.guessMapped(config, MappedSample.map(file, windowBytes));
+    }
 
-        final ConfigDiff newlineConfig = configMapperFactory.newConfigDiff();
-        if (crlfCount > crCount / 2 && crlfCount > lfCount / 2) {
-            newlineConfig.set("newline", "CRLF");
-        } else if (crCount > lfCount / 2) {
-            newlineConfig.set("newline", "CR");
-        } else {
-            newlineConfig.set("newline", "LF");
+    /**
+     * Guesses a newline from the head of a file as {@link #guess(ConfigSource, Path, int)} does, through an open channel.
+     *
+     * <p>The head is mapped from the beginning of the file regardless of the position of the channel. The channel is not closed.
+     *
+     * @param config  a partial config which it starts guessing from
+     * @param channel  the channel of the file to be guessed
+     * @param windowBytes  the maximum number of bytes to be mapped from the beginning of the file
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     * @throws IOException  if the file cannot be read
+     * @throws IllegalArgumentException  if the window is negative
+     */
+    public ConfigDiff guess(final ConfigSource config, final FileChannel channel, final int windowBytes) throws IOException {
+        if (!config.getNestedOrGetEmpty("parser").has("charset")) {
+            return this.charsetGuess.guess(channel, windowBytes);
         }
+        return this.guessMapped(config, MappedSample.map(channel, windowBytes));
+    }
+
+    private ConfigDiff guessMapped(final ConfigSource config, final ByteBuffer mapped) {
+        final String charsetName = config.getNestedOrGetEmpty("parser").get(String.class, "charset");
+        final int length = mapped.limit();
+        final NewlineCounts counts = NewlineCounts.count(mapped, 0, length, CodeUnits.of(charsetName, mapped, 0, length), null);
+        return this.newConfigDiff(counts.toNewline());
+    }
+
+    private ConfigDiff newConfigDiff(final Newline newline) {
+        final ConfigDiff newlineConfig = configMapperFactory.newConfigDiff();
+        newlineConfig.set("newline", newline.name());
 
-        final ConfigDiff parserConfig = configMapperFactory.newConfigDiff();
-        parserConfig.setNested("parser", newlineConfig);
-        return parserConfig;
+        final ConfigDiff result = configMapperFactory.newConfigDiff();
+        result.setNested("parser", newlineConfig);
+        return result;
     }
 
     static int countForTesting(final byte[] array, final byte[] target) {
-        return count(array, target);
+        final NewlineCounts counts = NewlineCounts.count(array, 0, array.length);
+        if (Arrays.equals(target, CR)) {
+            return counts.cr;
+        } else if (Arrays.equals(target, LF)) {
+            return counts.lf;
+        } else if (Arrays.equals(target, CRLF)) {
+            return counts.crlf;
+        }
+        throw new IllegalArgumentException("Only CR, LF, and CRLF are counted.");
     }
 
-    private static int count(final byte[] array, final byte[] target) {
-        if (target.length == 0) {
-            return 0;
+    /**
+     * Counts CR, LF, and CRLF in a byte sequence at once.
+     *
+     * <p>CR and LF are counted even when they are a part of CRLF, as {@code newline.rb} counts them.
+     */
+    static final class NewlineCounts {
+        private NewlineCounts(final int cr, final int lf, final int crlf) {
+            this.cr = cr;
+            this.lf = lf;
+            this.crlf = crlf;
         }
 
-        int count = 0;
-        outer: for (int i = 0; i < array.length - target.length + 1; i++) {
-            for (int j = 0; j < target.length; j++) {
-                if (array[i + j] != target[j]) {
-                    continue outer;
+        /**
+         * Counts in code units of the charset, which are two bytes in UTF-16, and four bytes in UTF-32.
+         *
+         * <p>It counts bytes if the charset is neither UTF-16 nor UTF-32, or unknown to Java.
+         */
+        static NewlineCounts count(final byte[] array, final int offset, final int length, final String charsetName) {
+            final ByteBuffer bytes = ByteBuffer.wrap(array);
+            return count(bytes, offset, length, CodeUnits.of(charsetName, bytes, offset, length), null);
+        }
+
+        static NewlineCounts count(final byte[] array, final int offset, final int length) {
+            return count(ByteBuffer.wrap(array), offset, length, CodeUnits.BYTES, null);
+        }
+
+        /**
+         * Counts in a single pass, which also reports each CR and LF to {@code lines} if not {@code null}.
+         *
+         * <p>Bytes are scanned word by word, which skips eight bytes at once when none of them is CR nor LF.
+         * A trailing incomplete code unit is ignored. The words are read from the array behind a heap buffer,
+         * and by {@link java.nio.ByteBuffer#getLong(int)} only from a buffer not backed by an array, such as a mapped file.
+         */
+        static NewlineCounts count(
+                final ByteBuffer bytes, final int offset, final int length, final CodeUnits units, final LineIndex.Builder lines) {
+            if (units != CodeUnits.BYTES) {
+                return countUnits(bytes, offset, length, units, lines);
+            }
+
+            final int end = offset + length;
+            final byte[] array = bytes.hasArray() ? bytes.array() : null;
+            final int arrayOffset = (array != null) ? bytes.arrayOffset() : 0;
+
+            int cr = 0;
+            int lf = 0;
+            int crlf = 0;
+            boolean afterCr = false;
+            int i = offset;
+            while (i < end) {
+                final int blockEnd;
+                if (i + 8 <= end) {
+                    final long word = (array != null) ? GuessUtil.readLong(array, arrayOffset + i) : bytes.getLong(i);
+                    if (!hasByte(word, CR_WORD) && !hasByte(word, LF_WORD)) {
+                        afterCr = false;
+                        i += 8;
+                        continue;
+                    }
+                    blockEnd = i + 8;
+                } else {
+                    blockEnd = end;
+                }
+
+                for (; i < blockEnd; i++) {
+                    final byte b = (array != null) ? array[arrayOffset + i] : bytes.get(i);
+                    if (b == '\r') {
+                        cr++;
+                        if (lines != null) {
+                            lines.cr(i - offset);
+                        }
+                        afterCr = true;
+                    } else {
+                        if (b == '\n') {
+                            lf++;
+                            if (afterCr) {
+                                crlf++;
+                            }
+                            if (lines != null) {
+                                lines.lf(i - offset, afterCr);
+                            }
+                        }
+                        afterCr = false;
+                    }
                 }
             }
-            count++;
+            return new NewlineCounts(cr, lf, crlf);
         }
-        return count;
+
+        /**
+         * Decides a newline from the counts in the same way as {@code newline.rb}.
+         */
+        Newline toNewline() {
+            if (this.crlf > this.cr / 2 && this.crlf > this.lf / 2) {
+                return Newline.CRLF;
+            } else if (this.cr > this.lf / 2) {
+                return Newline.CR;
+            }
+            return Newline.LF;
+        }
+
+        private static NewlineCounts countUnits(
+                final ByteBuffer bytes, final int offset, final int length, final CodeUnits units, final LineIndex.Builder lines) {
+            final int end = offset + length;
+
+            int cr = 0;
+            int lf = 0;
+            int crlf = 0;
+            boolean afterCr = false;
+            for (int i = offset; i + units.width <= end; i += units.width) {
+                final int unit = units.read(bytes, i);
+                if (unit == '\r') {
+                    cr++;
+                    if (lines != null) {
+                        lines.cr(i - offset);
+                    }
+                    afterCr = true;
+                } else {
+                    if (unit == '\n') {
+                        lf++;
+                        if (afterCr) {
+                            crlf++;
+                        }
+                        if (lines != null) {
+                            lines.lf(i - offset, afterCr);
+                        }
+                    }
+                    afterCr = false;
+                }
+            }
+            return new NewlineCounts(cr, lf, crlf);
+        }
+
+        /**
+         * Tests if any byte in the word is the byte repeated in {@code pattern}.
+         *
+         * <p>A byte equal to the pattern is zero after XOR. Subtracting one from each byte borrows into its highest bit
+         * only from a zero byte, or from a byte above a borrowing zero byte, so the test is exact for the existence.
+         */
+        private static boolean hasByte(final long word, final long pattern) {
+            final long xored = word ^ pattern;
+            return ((xored - 0x0101010101010101L) & ~xored & 0x8080808080808080L) != 0;
+        }
+
+        final int cr;
+        final int lf;
+        final int crlf;
+
+        private static final long CR_WORD = 0x0d0d0d0d0d0d0d0dL;
+        private static final long LF_WORD = 0x0a0a0a0a0a0a0a0aL;
     }
 
     private static final byte[] CRLF = { (byte) '\r', (byte) '\n' };
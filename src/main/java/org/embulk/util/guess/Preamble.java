@@ -0,0 +1,96 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import org.embulk.config.ConfigDiff;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.text.Newline;
+
+/**
+ * The preamble of a text parser guessed by {@link PreambleGuess}.
+ */
+public final class Preamble {
+    Preamble(
+            final ConfigMapperFactory configMapperFactory,
+            final String charset,
+            final Newline newline,
+            final boolean byteOrderMark,
+            final LineIndex lineIndex) {
+        this.configMapperFactory = configMapperFactory;
+        this.charset = charset;
+        this.newline = newline;
+        this.byteOrderMark = byteOrderMark;
+        this.lineIndex = lineIndex;
+    }
+
+    /**
+     * Returns the name of the character set, in the same form as {@link CharsetGuess#guess}.
+     *
+     * @return the name of the character set
+     */
+    public String getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * Returns the newline.
+     *
+     * @return the newline
+     */
+    public Newline getNewline() {
+        return this.newline;
+    }
+
+    /**
+     * Returns {@code true} if the sample starts with a byte order mark of the character set.
+     *
+     * @return {@code true} if the sample starts with a byte order mark
+     */
+    public boolean hasByteOrderMark() {
+        return this.byteOrderMark;
+    }
+
+    /**
+     * Returns the lines in the sample.
+     *
+     * @return {@link LineIndex} of the lines
+     */
+    public LineIndex getLineIndex() {
+        return this.lineIndex;
+    }
+
+    /**
+     * Returns {@link org.embulk.config.ConfigDiff} which contains {@code parser.charset} and {@code parser.newline}.
+     *
+     * @return {@link org.embulk.config.ConfigDiff} guessed
+     */
+    public ConfigDiff toConfigDiff() {
+        final ConfigDiff parserConfig = this.configMapperFactory.newConfigDiff();
+        parserConfig.set("charset", this.charset);
+        parserConfig.set("newline", this.newline.name());
+
+        final ConfigDiff result = this.configMapperFactory.newConfigDiff();
+        result.setNested("parser", parserConfig);
+        return result;
+    }
+
+    private final ConfigMapperFactory configMapperFactory;
+    private final String charset;
+    private final Newline newline;
+    private final boolean byteOrderMark;
+    private final LineIndex lineIndex;
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.embulk.config.ConfigSource;
+import org.embulk.spi.Buffer;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.text.LineDelimiter;
+import org.embulk.util.text.Newline;
+
+/**
+ * Guesses the preamble of a text parser from {@link org.embulk.spi.Buffer} at once: a character set, a newline,
+ * a byte order mark, and the lines.
+ *
+ * <p>It replaces the sequence of {@link CharsetGuess}, {@link NewlineGuess}, and {@link LineGuessHelper#toLines},
+ * which detects a character set up to twice, and walks the sample for each. It detects a character set once unless
+ * configured, and then counts the newlines and indexes the lines together in a single pass over the sample, without
+ * copying nor decoding the sample.
+ */
+public final class PreambleGuess {
+    private PreambleGuess(final ConfigMapperFactory configMapperFactory) {
+        this.configMapperFactory = configMapperFactory;
+        this.charsetGuess = CharsetGuess.of(configMapperFactory);
+    }
+
+    public static PreambleGuess of(final ConfigMapperFactory configMapperFactory) {
+        return new PreambleGuess(configMapperFactory);
+    }
+
+    /**
+     * Guesses the preamble from {@link org.embulk.spi.Buffer}.
+     *
+     * <p>{@code parser.charset} and {@code parser.newline} are used as they are if configured, instead of guessing.
+     * {@code parser.line_delimiter_recognized} is used to split the lines as {@link LineGuessHelper#toLines} does.
+     *
+     * @param config  a partial config which it starts guessing from
+     * @param sample  the byte sequence to be guessed
+     * @return {@link Preamble} guessed
+     * @throws IllegalArgumentException  if {@code parser.newline} or {@code parser.line_delimiter_recognized} is invalid
+     */
+    public Preamble guess(final ConfigSource config, final Buffer sample) {
+        final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
+        final LineDelimiter lineDelimiter = GuessUtil.getLineDelimiter(parserConfig);
+
+        final ByteBuffer sampleBytes = ByteBuffer.wrap(GuessUtil.arrayOf(sample));
+        final int sampleOffset = sample.offset();
+        final int sampleLength = sample.limit();
+
+        final String charset;
+        if (parserConfig.has("charset")) {
+            charset = parserConfig.get(String.class, "charset");
+        } else {
+            charset = this.charsetGuess.guessCharsetName(sample);
+        }
+
+        final CodeUnits units = CodeUnits.of(charset, sampleBytes, sampleOffset, sampleLength);
+        final int byteOrderMarkLength = units.byteOrderMarkLength(charset, sampleBytes, sampleOffset, sampleLength);
+        final LineIndex.Builder lines = new LineIndex.Builder(
+                units, lineDelimiter, units.skippedByteOrderMarkLength(charset, sampleBytes, sampleOffset, sampleLength));
+        final NewlineGuess.NewlineCounts counts = NewlineGuess.NewlineCounts.count(sampleBytes, sampleOffset, sampleLength, units, lines);
+
+        final Newline newline;
+        if (parserConfig.has("newline")) {
+            newline = GuessUtil.getNewline(parserConfig);
+        } else {
+            newline = counts.toNewline();
+        }
+
+        return new Preamble(
+                this.configMapperFactory,
+                charset,
+                newline,
+                byteOrderMarkLength > 0,
+                lines.build(sampleBytes, sampleOffset, sampleLength, charsetOrNull(charset),
+                            units.endsWith(sampleBytes, sampleOffset, sampleLength, newline.getString())));
+    }
+
+    private static Charset charsetOrNull(final String charsetName) {
+        try {
+            return Charset.forName(charsetName);
+        } catch (final IllegalArgumentException ex) {  // Only the lines cannot be decoded. The other results are still valid.
+            return null;
+        }
+    }
+
+    private final ConfigMapperFactory configMapperFactory;
+    private final CharsetGuess charsetGuess;
+}
@@ -16,8 +16,13 @@
 
 package org.embulk.util.guess;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
@@ -45,6 +50,21 @@ public final class TextGuessHelper {
     }
 
     public String toText(final ConfigSource config, final Buffer sample) {
+        return this.toText(config, Collections.singletonList(sample));
+    }
+
+    /**
+     * Converts a sample in {@link org.embulk.spi.Buffer}s to a text, without concatenating the {@link org.embulk.spi.Buffer}s.
+     *
+     * <p>The lines are decoded across the boundaries of the {@link org.embulk.spi.Buffer}s. A character set is guessed from
+     * the sample unless {@code parser.charset} is configured. The guess is the same as from the sample in a single
+     * {@link org.embulk.spi.Buffer}, as only the windows to be sampled are copied from a sample larger than 64 KiB.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param sample  the byte sequence to be converted in {@link org.embulk.spi.Buffer}s
+     * @return the text, or {@code null} if the config is invalid
+     */
+    public String toText(final ConfigSource config, final List<Buffer> sample) {
         final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
 
         final Charset charset;
@@ -71,11 +91,7 @@ public final class TextGuessHelper {
             return null;
         }
 
-        final ArrayList<Buffer> listBuffer = new ArrayList<>();
-        listBuffer.add(sample);
-        final ArrayList<ArrayList<Buffer>> listListBuffer = new ArrayList<>();
-        listListBuffer.add(listBuffer);
-        final LineDecoder decoder = LineDecoder.of(new ListFileInput(listListBuffer), charset, lineDelimiter);
+        final LineDecoder decoder = LineDecoder.of(new ListFileInput(Collections.singletonList(sample)), charset, lineDelimiter);
 
         final StringBuilder sampleText = new StringBuilder();
 
@@ -99,6 +115,39 @@ public final class TextGuessHelper {
         return sampleText.toString();
     }
 
+    /**
+     * Returns {@link java.io.Reader} of the same text as {@link #toText}, which is decoded lazily from the sample.
+     *
+     * <p>The text is never materialized as a whole. The sample is decoded chunk by chunk as it is read, and the line
+     * delimiters are converted into the newline on the fly. The sample is referred, not copied, so the sample must not be
+     * modified nor released until the reader is closed.
+     *
+     * @param config  a partial config which contains {@code parser.charset} and {@code parser.newline}
+     * @param sample  the byte sequence to be read
+     * @return {@link java.io.Reader} of the text, or {@code null} if the config is invalid
+     */
+    public Reader toReader(final ConfigSource config, final Buffer sample) {
+        final ConfigSource parserConfig = config.getNestedOrGetEmpty("parser");
+
+        final Charset charset;
+        final LineDelimiter lineDelimiter;
+        final Newline newline;
+        try {
+            charset = GuessUtil.getCharset(parserConfig, this.configMapperFactory, sample);
+            lineDelimiter = GuessUtil.getLineDelimiter(parserConfig);
+            newline = GuessUtil.getNewline(parserConfig);
+        } catch (final IllegalArgumentException ex) {
+            logger.warn(ex.getMessage(), ex);
+            return null;
+        }
+
+        // LineDecoder skips the byte order mark only in UTF-8. Java skips it by itself in UTF-16 and UTF-32.
+        final byte[] array = GuessUtil.arrayOf(sample);
+        final int byteOrderMarkLength = CodeUnits.BYTES.byteOrderMarkLength(charset.name(), ByteBuffer.wrap(array), sample.offset(), sample.limit());
+        final ByteArrayInputStream bytes = new ByteArrayInputStream(array, sample.offset() + byteOrderMarkLength, sample.limit() - byteOrderMarkLength);
+        return new NewlineConvertingReader(new InputStreamReader(bytes, charset), lineDelimiter, newline);
+    }
+
     private static final Logger logger = LoggerFactory.getLogger(TextGuessHelper.class);
 
     private final ConfigMapperFactory configMapperFactory;
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates randomized inputs for differential tests from grammars: timestamps, numbers, JSON snippets, and bytes in
+ * multiple character sets.
+ *
+ * <p>The same seed always generates the same sequence of inputs, so that a failure is reproduced by its seed.
+ * The inputs are not always valid. Some of them are mutated to hit the edges of the guessers.
+ */
+final class DifferentialCorpus {
+    DifferentialCorpus(final long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates a column of values in the same shape of timestamps, some of which are mutated or of another shape.
+     */
+    List<Object> timestamps(final int count) {
+        final TimestampShape shape = new TimestampShape(this.random);
+        final ArrayList<Object> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int kind = this.random.nextInt(20);
+            if (kind == 0) {
+                values.add(new TimestampShape(this.random).render(this.random));
+            } else if (kind == 1) {
+                values.add(this.mutate(shape.render(this.random)));
+            } else if (kind == 2) {
+                final Object cell = this.cell();
+                values.add(cell == null ? "" : cell);  // TimeFormatGuess does not expect null while SchemaGuess filters it.
+            } else {
+                values.add(shape.render(this.random));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Generates records whose columns are typed at random, some columns of which have cells of another type.
+     */
+    List<List<Object>> records(final int rows, final int columns) {
+        final ArrayList<Integer> kinds = new ArrayList<>(columns);
+        final ArrayList<TimestampShape> shapes = new ArrayList<>(columns);
+        final ArrayList<Boolean> noisy = new ArrayList<>(columns);
+        for (int column = 0; column < columns; column++) {
+            kinds.add(this.random.nextInt(CELL_KINDS + 2));  // Also plain longs and doubles, as numbers in general are mostly strings.
+            shapes.add(new TimestampShape(this.random));
+            noisy.add(this.random.nextInt(3) == 0);
+        }
+
+        final ArrayList<List<Object>> records = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            final ArrayList<Object> record = new ArrayList<>(columns);
+            for (int column = 0; column < columns; column++) {
+                if (noisy.get(column) && this.random.nextInt(10) == 0) {
+                    record.add(this.cell());
+                } else if (kinds.get(column) == 0) {
+                    record.add(shapes.get(column).render(this.random));
+                } else if (kinds.get(column) == CELL_KINDS) {
+                    record.add(Integer.toString(this.random.nextInt()));
+                } else if (kinds.get(column) == CELL_KINDS + 1) {
+                    record.add(this.random.nextInt(1000) + "." + this.digits(1 + this.random.nextInt(4)));
+                } else {
+                    record.add(this.cell(kinds.get(column)));
+                }
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Generates a cell of any type: a timestamp, a number, a JSON snippet, a boolean, a word, an empty string, or
+     * {@code null}, in a string or in an object as parsed from JSON.
+     */
+    Object cell() {
+        return this.cell(this.random.nextInt(CELL_KINDS));
+    }
+
+    /**
+     * Generates a number in a string, which may be unusual as a number of Java.
+     */
+    String number() {
+        final StringBuilder builder = new StringBuilder();
+        switch (this.random.nextInt(12)) {
+            case 0:
+                return pick(this.random, "NaN", "Infinity", "-Infinity", "+NaN", "nan", "inf", "0", "-0", "+0");
+            case 1:
+                return Long.toString(this.random.nextLong());
+            case 2:  // Beyond long.
+                return (this.random.nextBoolean() ? "-" : "") + "9" + this.digits(19 + this.random.nextInt(5));
+            case 3:  // Thousand separators.
+                return this.random.nextInt(1000) + "," + this.digits(3) + (this.random.nextBoolean() ? "," + this.digits(3) : "");
+            case 4:
+                return "0x" + Integer.toHexString(this.random.nextInt());
+            default:
+                break;
+        }
+        builder.append(pick(this.random, "", "", "", "-", "+"));
+        final int integerPart = this.random.nextInt(6);
+        if (integerPart == 0) {
+            builder.append("0");
+        } else if (integerPart == 1) {
+            builder.append("0").append(this.digits(1 + this.random.nextInt(3)));  // Leading zeros.
+        } else if (integerPart < 5) {
+            builder.append(1 + this.random.nextInt(9)).append(this.digits(this.random.nextInt(12)));
+        }
+        if (this.random.nextInt(3) == 0) {
+            builder.append('.').append(this.digits(this.random.nextInt(8)));
+        }
+        if (this.random.nextInt(6) == 0) {
+            builder.append(pick(this.random, "e", "E")).append(pick(this.random, "", "+", "-")).append(this.digits(this.random.nextInt(4)));
+        }
+        if (this.random.nextInt(10) == 0) {
+            builder.append(pick(this.random, "f", "F", "d", "D", "L"));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generates a JSON snippet, which may be broken.
+     */
+    String json() {
+        final StringBuilder builder = new StringBuilder();
+        this.appendJson(builder, this.random.nextInt(4));
+        final String json = builder.toString();
+        if (this.random.nextInt(8) == 0 && !json.isEmpty()) {
+            return json.substring(0, this.random.nextInt(json.length()));
+        }
+        return json;
+    }
+
+    /**
+     * Generates bytes of text in a character set, random bytes, or text mixed with binary.
+     */
+    byte[] bytes() {
+        final int kind = this.random.nextInt(10);
+        if (kind == 0) {
+            final byte[] bytes = new byte[this.random.nextInt(12000)];
+            this.random.nextBytes(bytes);
+            return bytes;
+        }
+        if (kind == 1) {
+            final byte[] bytes = new byte[this.random.nextInt(3000)];
+            for (int i = 0; i < bytes.length; i++) {
+                final int r = this.random.nextInt(20);
+                bytes[i] = (byte) (r < 15 ? 0x20 + this.random.nextInt(0x5f) : r < 16 ? this.random.nextInt(0x20) : 0x80 + this.random.nextInt(0x80));
+            }
+            return bytes;
+        }
+        if (kind == 2) {
+            return pick(this.random, EDGE_BYTES).clone();
+        }
+
+        final Charset charset = Charset.forName(pick(this.random, CHARSETS));
+        final StringBuilder builder = new StringBuilder();
+        final int target = this.random.nextInt(this.random.nextBoolean() ? 400 : 14000);
+        final String text = pick(this.random, TEXTS);
+        while (builder.length() < target) {
+            builder.append(this.random.nextInt(6) == 0 ? pick(this.random, TEXTS) : text);
+            if (this.random.nextInt(8) == 0) {
+                builder.append("<tag attr=\"x\">");
+            }
+        }
+        if (this.random.nextInt(4) == 0) {
+            builder.insert(0, TEXTS[TEXTS.length - 1]);
+        }
+        byte[] bytes = builder.toString().getBytes(charset);
+        if (this.random.nextInt(5) == 0 && bytes.length > 0) {
+            bytes = Arrays.copyOf(bytes, this.random.nextInt(bytes.length));  // Truncated in the middle of a character.
+        }
+        if (this.random.nextInt(5) == 0) {
+            for (int k = this.random.nextInt(10); k > 0 && bytes.length > 0; k--) {
+                bytes[this.random.nextInt(bytes.length)] = (byte) this.random.nextInt(256);
+            }
+        }
+        if (this.random.nextInt(10) == 0 && bytes.length > 0) {
+            // ASCII before the text, to be beyond the first 8000 bytes.
+            final int prefix = this.random.nextInt(20000);
+            final byte[] padded = new byte[prefix + bytes.length];
+            for (int i = 0; i < prefix; i++) {
+                padded[i] = (byte) (0x20 + this.random.nextInt(0x5f));
+            }
+            System.arraycopy(bytes, 0, padded, prefix, bytes.length);
+            bytes = padded;
+        }
+        return bytes;
+    }
+
+    Random random() {
+        return this.random;
+    }
+
+    private Object cell(final int kind) {
+        switch (kind) {
+            case 0:
+                return new TimestampShape(this.random).render(this.random);
+            case 1:
+                return this.number();
+            case 2:
+                return this.json();
+            case 3:
+                return pick(this.random, BOOLEANS);
+            case 4:
+                return pick(this.random, WORDS);
+            case 5:
+                return this.random.nextBoolean() ? "" : null;
+            default:
+                return this.object(this.random.nextInt(2));
+        }
+    }
+
+    /**
+     * Generates an object as parsed from JSON, not in a string.
+     */
+    private Object object(final int depth) {
+        switch (this.random.nextInt(depth > 0 ? 7 : 5)) {
+            case 0:
+                return this.random.nextLong();
+            case 1:
+                return this.random.nextDouble() * 1000;
+            case 2:
+                return this.random.nextBoolean();
+            case 3:
+                return pick(this.random, WORDS);
+            case 4:
+                return null;
+            case 5:
+                final LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+                for (int i = this.random.nextInt(3); i > 0; i--) {
+                    map.put(pick(this.random, WORDS), this.object(depth - 1));
+                }
+                return map;
+            default:
+                final ArrayList<Object> list = new ArrayList<>();
+                for (int i = this.random.nextInt(3); i > 0; i--) {
+                    list.add(this.object(depth - 1));
+                }
+                return list;
+        }
+    }
+
+    private void appendJson(final StringBuilder builder, final int depth) {
+        final String space = this.random.nextInt(4) == 0 ? " " : "";
+        switch (this.random.nextInt(depth > 0 ? 6 : 4)) {
+            case 0:
+                builder.append('"').append(pick(this.random, WORDS)).append(this.random.nextInt(10) == 0 ? "\\\"" : "").append('"');
+                return;
+            case 1:
+                builder.append(this.number());
+                return;
+            case 2:
+                builder.append(pick(this.random, "true", "false", "null", "True", "undefined"));
+                return;
+            case 3:
+                builder.append(pick(this.random, "{}", "[]", "{ }", "[ ]"));
+                return;
+            case 4:
+                builder.append('{').append(space);
+                for (int i = this.random.nextInt(4); i > 0; i--) {
+                    builder.append('"').append(pick(this.random, WORDS)).append('"').append(':').append(space);
+                    this.appendJson(builder, depth - 1);
+                    if (i > 1 || this.random.nextInt(20) == 0) {  // A trailing comma at times.
+                        builder.append(',').append(space);
+                    }
+                }
+                builder.append('}');
+                return;
+            default:
+                builder.append('[').append(space);
+                for (int i = this.random.nextInt(4); i > 0; i--) {
+                    this.appendJson(builder, depth - 1);
+                    if (i > 1 || this.random.nextInt(20) == 0) {
+                        builder.append(',').append(space);
+                    }
+                }
+                builder.append(']');
+                return;
+        }
+    }
+
+    /**
+     * Mutates a character of the string: replaced, deleted, or inserted.
+     */
+    private String mutate(final String string) {
+        if (string.isEmpty()) {
+            return pick(this.random, NOISE);
+        }
+        final int index = this.random.nextInt(string.length());
+        switch (this.random.nextInt(3)) {
+            case 0:
+                return string.substring(0, index) + pick(this.random, NOISE) + string.substring(index + 1);
+            case 1:
+                return string.substring(0, index) + string.substring(index + 1);
+            default:
+                return string.substring(0, index) + pick(this.random, NOISE) + string.substring(index);
+        }
+    }
+
+    private String digits(final int length) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('0' + this.random.nextInt(10)));
+        }
+        return builder.toString();
+    }
+
+    @SafeVarargs
+    private static <T> T pick(final Random random, final T... candidates) {
+        return candidates[random.nextInt(candidates.length)];
+    }
+
+    /**
+     * A shape of timestamps derived from the grammar, to render timestamps of different values in the same shape.
+     *
+     * <pre>{@code
+     * timestamp := rfc2822 | date [ time-separator time [ fraction ] [ meridian ] ] [ zone-separator zone ]
+     * date := year sep month sep day | month sep day sep year | day sep month sep year | yyyymmdd
+     * rfc2822 := [ weekday ", " ] day " " month-name " " year " " hh ":" mm [ ":" ss ] " " zone
+     * }</pre>
+     */
+    private static final class TimestampShape {
+        TimestampShape(final Random random) {
+            this.rfc2822 = random.nextInt(8) == 0;
+            this.dateOrder = random.nextInt(3);
+            this.dateSeparator = pick(random, "-", "-", "/", ".", "", " ");
+            this.monthName = random.nextInt(5) == 0;
+            this.twoDigitYear = random.nextInt(10) == 0;
+            this.padDate = random.nextInt(4) != 0;
+            this.padHour = random.nextInt(4) != 0;
+            this.timeSeparator = random.nextInt(5) == 0 ? null : pick(random, " ", " ", "T", ":", "  ");
+            this.seconds = random.nextInt(5) != 0;
+            this.fractionDigits = random.nextInt(3) == 0 ? pick(random, 1, 3, 3, 6, 9, 10) : 0;
+            this.fractionSeparator = pick(random, ".", ".", ",");
+            this.meridian = random.nextInt(10) == 0 ? pick(random, "AM", "PM", "am", "pm") : null;
+            this.zone = random.nextInt(2) == 0 ? null : pick(random, ZONES);
+            this.zoneSeparator = pick(random, "", " ", " ");
+            this.weekday = random.nextBoolean();
+        }
+
+        String render(final Random random) {
+            final int year = 1970 + random.nextInt(80);
+            final int month = 1 + random.nextInt(12);
+            final int day = 1 + random.nextInt(31);
+            final int hour = random.nextInt(this.meridian == null ? 24 : 13);
+            final int minute = random.nextInt(60);
+            final int second = random.nextInt(61);
+
+            final StringBuilder builder = new StringBuilder();
+            if (this.rfc2822) {
+                if (this.weekday) {
+                    builder.append(pick(random, WEEKDAYS)).append(", ");
+                }
+                builder.append(pad(day, this.padDate)).append(' ').append(MONTHS[month - 1]).append(' ').append(this.year(year))
+                        .append(' ').append(pad(hour, true)).append(':').append(pad(minute, true));
+                if (this.seconds) {
+                    builder.append(':').append(pad(second, true));
+                }
+                return builder.append(' ').append(this.zone == null ? "+0900" : this.zone.trim()).toString();
+            }
+
+            final String monthString = this.monthName ? MONTHS[month - 1] : pad(month, this.padDate);
+            if (this.dateSeparator.isEmpty() && !this.monthName) {
+                builder.append(year).append(pad(month, true)).append(pad(day, true));
+            } else if (this.dateOrder == 0) {
+                builder.append(this.year(year)).append(this.dateSeparator).append(monthString).append(this.dateSeparator).append(pad(day, this.padDate));
+            } else if (this.dateOrder == 1) {
+                builder.append(monthString).append(this.dateSeparator).append(pad(day, this.padDate)).append(this.dateSeparator).append(this.year(year));
+            } else {
+                builder.append(pad(day, this.padDate)).append(this.dateSeparator).append(monthString).append(this.dateSeparator).append(this.year(year));
+            }
+
+            if (this.timeSeparator != null) {
+                builder.append(this.timeSeparator).append(pad(hour, this.padHour)).append(':').append(pad(minute, true));
+                if (this.seconds) {
+                    builder.append(':').append(pad(second, true));
+                    if (this.fractionDigits > 0) {
+                        builder.append(this.fractionSeparator);
+                        for (int i = 0; i < this.fractionDigits; i++) {
+                            builder.append((char) ('0' + random.nextInt(10)));
+                        }
+                    }
+                }
+                if (this.meridian != null) {
+                    builder.append(' ').append(this.meridian);
+                }
+            }
+            if (this.zone != null) {
+                builder.append(this.zone.equals("Z") ? "" : this.zoneSeparator).append(this.zone);
+            }
+            return builder.toString();
+        }
+
+        private String year(final int year) {
+            return this.twoDigitYear ? pad(year % 100, true) : Integer.toString(year);
+        }
+
+        private static String pad(final int value, final boolean padded) {
+            return padded ? String.format(Locale.ENGLISH, "%02d", value) : Integer.toString(value);
+        }
+
+        private final boolean rfc2822;
+        private final int dateOrder;
+        private final String dateSeparator;
+        private final boolean monthName;
+        private final boolean twoDigitYear;
+        private final boolean padDate;
+        private final boolean padHour;
+        private final String timeSeparator;
+        private final boolean seconds;
+        private final int fractionDigits;
+        private final String fractionSeparator;
+        private final String meridian;
+        private final String zone;
+        private final String zoneSeparator;
+        private final boolean weekday;
+    }
+
+    private static final int CELL_KINDS = 7;
+
+    private static final String[] ZONES = {
+        "Z", "UTC", "GMT", "JST", "PST", "EDT", "+09:00", "-08:00", "+0900", "-0800", "+09", "-0330", "+14:00", "America/Los_Angeles",
+    };
+
+    private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    private static final String[] WEEKDAYS = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+
+    private static final String[] BOOLEANS = {
+        "true", "True", "TRUE", "yes", "Yes", "YES", "t", "T", "y", "Y", "on", "On", "ON",
+        "false", "False", "FALSE", "no", "No", "NO", "f", "F", "n", "N", "off", "Off", "OFF",
+        "tRUE", "yES", "1", "0", "nil", "null",
+    };
+
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "いろは", "東京都", "a b", "Jan", "Mon", "T", "Z", "-", ":", " ", "\t", "x\"y", "1a",
+    };
+
+    private static final String[] NOISE = { "0", "9", "a", "Z", " ", ":", "-", "/", ".", "+", "T", "あ" };
+
+    // The last one is in ASCII, to be inserted at the head of another text.
+    private static final String[] TEXTS = {
+        "The quick brown fox jumps over the lazy dog and then the cat said that there is nothing to do with it. ",
+        "Le renard brun rapide saute par-dessus le chien paresseux, et c'est très élégant à voir pour les enfants. ",
+        "Der schnelle braune Fuchs springt über den faulen Hund und die Katze schläft in der Sonne, während es regnet. ",
+        "El rápido zorro marrón salta sobre el perro perezoso y la niña está en la casa con su madre. ",
+        "Съешь же ещё этих мягких французских булок, да выпей чаю. Быстрая коричневая лиса прыгает через ленивую собаку. ",
+        "Γρήγορη καφέ αλεπού πηδάει πάνω από τον τεμπέλη σκύλο και η γάτα κοιμάται στον ήλιο. ",
+        "השועל החום המהיר קופץ מעל הכלב העצלן והחתול ישן בשמש של הבוקר. ",
+        "الثعلب البني السريع يقفز فوق الكلب الكسول والقطة تنام في الشمس في الصباح. ",
+        "Hızlı kahverengi tilki tembel köpeğin üzerinden atlar ve kedi güneşte uyur, çok güzel bir gün. ",
+        "Szybki brązowy lis przeskakuje nad leniwym psem, a kot śpi na słońcu w ogrodzie. ",
+        "いろはにほへとちりぬるを わかよたれそ つねならむ うゐのおくやま けふこえて あさきゆめみし ゑひもせす。日本語の文章です。カタカナもテスト。",
+        "我能吞下玻璃而不伤身体。这是一个中文的句子，用来测试字符集的检测。我们的数据很多。",
+        "我能吞下玻璃而不傷身體。這是一個中文的句子，用來測試字元集的檢測。我們的資料很多。",
+        "나는 유리를 먹을 수 있어요. 그래도 아프지 않아요. 한국어 문장입니다. 데이터가 많습니다.",
+        "id,name,price,created_at\n1,apple,100,2020-01-01 00:00:00\n2,banana,200,2020-01-02 12:34:56\n",
+    };
+
+    private static final String[] CHARSETS = {
+        "UTF-8", "UTF-16BE", "UTF-16LE", "UTF-16", "UTF-32BE", "UTF-32LE", "Shift_JIS", "MS932", "EUC-JP", "ISO-2022-JP",
+        "EUC-KR", "ISO-2022-KR", "GB18030", "GB2312", "Big5", "ISO-8859-1", "ISO-8859-2", "ISO-8859-5", "ISO-8859-6",
+        "ISO-8859-7", "ISO-8859-8", "ISO-8859-9", "windows-1250", "windows-1251", "windows-1252", "windows-1256", "KOI8-R",
+        "IBM424", "IBM420",
+    };
+
+    // Byte order marks, and their fragments.
+    private static final byte[][] EDGE_BYTES = {
+        {},
+        { 0x01 },
+        { (byte) 0xef, (byte) 0xbb, (byte) 0xbf },
+        { (byte) 0xef, (byte) 0xbb },
+        { (byte) 0xfe, (byte) 0xff, 0x00, 0x41 },
+        { (byte) 0xff, (byte) 0xfe, 0x41, 0x00 },
+        { 0x00, 0x00, (byte) 0xfe, (byte) 0xff },
+        { (byte) 0xff, (byte) 0xfe, 0x00, 0x00, 0x41, 0x00, 0x00, 0x00 },
+        { 0x1b, 0x24, 0x42, 0x24, 0x22, 0x1b, 0x28, 0x42 },
+    };
+
+    private final Random random;
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Asserts upper bounds of bytes allocated in the hot paths of guessing, measured by {@code ThreadMXBean}.
+ *
+ * <p>The budgets have margins over what is measured, so that only a regression fails, not a noise. Lower the budgets
+ * when a hot path allocates less. The tests are tagged as {@code "allocation"}, and run by {@code ./gradlew allocationTest}
+ * in {@code ./gradlew check}, not by {@code ./gradlew test}.
+ */
+@Tag("allocation")
+public class TestAllocationBudget {
+    @Test
+    public void testSchemaGuessPerCell() {
+        final List<List<Object>> records = records(1000, 10, new Random(49));
+        final SchemaGuess schemaGuess = SchemaGuess.of(CONFIG_MAPPER_FACTORY);
+        assertBudget("SchemaGuess", "cell", SCHEMA_GUESS_BYTES_PER_CELL, 1000 * 10, () -> schemaGuess.typesFromListRecords(records));
+    }
+
+    @Test
+    public void testTimeFormatGuessPerValue() {
+        final List<Object> timestamps = new ArrayList<>();
+        final Random random = new Random(49);
+        for (int i = 0; i < 1000; i++) {
+            timestamps.add(timestamp(random));
+        }
+        final TimeFormatGuess timeFormatGuess = TimeFormatGuess.of();
+        assertBudget("TimeFormatGuess", "value", TIME_FORMAT_GUESS_BYTES_PER_VALUE, 1000, () -> timeFormatGuess.guess(timestamps));
+    }
+
+    @Test
+    public void testCharsetGuessPerKilobyte() {
+        final CharsetGuess charsetGuess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        for (final String charset : Arrays.asList("UTF-8", "Shift_JIS", "EUC-JP")) {
+            final FakeBufferImpl sample = new FakeBufferImpl(text(charset, 64 * 1024, new Random(49)));
+            assertBudget("CharsetGuess in " + charset, "KB", CHARSET_GUESS_BYTES_PER_KILOBYTE, 64, () -> charsetGuess.guess(sample));
+        }
+    }
+
+    @Test
+    public void testNewlineGuessPerKilobyte() {
+        final FakeBufferImpl sample = new FakeBufferImpl(text("UTF-8", 64 * 1024, new Random(49)));
+        final ConfigSource config = configWithCharset("UTF-8");
+        final NewlineGuess newlineGuess = NewlineGuess.of(CONFIG_MAPPER_FACTORY);
+        assertBudget("NewlineGuess", "KB", NEWLINE_GUESS_BYTES_PER_KILOBYTE, 64, () -> newlineGuess.guess(config, sample));
+    }
+
+    @Test
+    public void testLineIndexPerKilobyte() {
+        final FakeBufferImpl sample = new FakeBufferImpl(text("UTF-8", 64 * 1024, new Random(49)));
+        final ConfigSource config = configWithCharset("UTF-8");
+        final LineGuessHelper lineGuessHelper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+        assertBudget("LineGuessHelper#toLineIndex", "KB", LINE_INDEX_BYTES_PER_KILOBYTE, 64, () -> lineGuessHelper.toLineIndex(config, sample));
+    }
+
+    /**
+     * Asserts that the task allocates within the budget per unit, at the fewest bytes in some rounds after warming up.
+     */
+    private static void assertBudget(final String name, final String unit, final long budgetPerUnit, final int units, final Runnable task) {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean, "Allocated bytes are not measured in this JVM.");
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled(),
+                   "Allocated bytes are not measured in this JVM.");
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENT_ROUNDS; i++) {
+            final long before = allocationBean.getThreadAllocatedBytes(threadId);
+            task.run();
+            fewest = Math.min(fewest, allocationBean.getThreadAllocatedBytes(threadId) - before);
+        }
+
+        final double perUnit = (double) fewest / units;
+        assertTrue(perUnit <= budgetPerUnit,
+                   String.format(Locale.ENGLISH, "%s allocated %.1f bytes per %s over the budget %d.", name, perUnit, unit, budgetPerUnit));
+    }
+
+    private static List<List<Object>> records(final int rows, final int columns, final Random random) {
+        final ArrayList<List<Object>> records = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            final ArrayList<Object> record = new ArrayList<>(columns);
+            for (int column = 0; column < columns; column++) {
+                switch (column % 5) {
+                    case 0:
+                        record.add(Integer.toString(random.nextInt(1000000)));
+                        break;
+                    case 1:
+                        record.add(Double.toString(random.nextDouble() * 1000));
+                        break;
+                    case 2:
+                        record.add(random.nextBoolean() ? "true" : "false");
+                        break;
+                    case 3:
+                        record.add(timestamp(random));
+                        break;
+                    default:
+                        record.add(WORDS.get(random.nextInt(WORDS.size())));
+                        break;
+                }
+            }
+            records.add(Collections.unmodifiableList(record));
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    private static String timestamp(final Random random) {
+        return String.format(Locale.ENGLISH, "20%02d-%02d-%02d %02d:%02d:%02d",
+                             random.nextInt(30), random.nextInt(12) + 1, random.nextInt(28) + 1,
+                             random.nextInt(24), random.nextInt(60), random.nextInt(60));
+    }
+
+    private static byte[] text(final String charset, final int bytes, final Random random) {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < bytes) {
+            for (int column = 0; column < 8; column++) {
+                builder.append(column > 0 ? "," : "").append(WORDS.get(random.nextInt(WORDS.size())));
+            }
+            builder.append("\r\n");
+        }
+        return Arrays.copyOf(builder.toString().getBytes(Charset.forName(charset)), bytes);
+    }
+
+    private static ConfigSource configWithCharset(final String charset) {
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", charset);
+        parserConfig.set("newline", "CRLF");
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.setNested("parser", parserConfig);
+        return config;
+    }
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASUREMENT_ROUNDS = 5;
+
+    // Strings take twice as many bytes in Java 8 without compact strings, so the budgets for strings have larger margins.
+    private static final long SCHEMA_GUESS_BYTES_PER_CELL = 12000;  // Measured about 4,200.
+    private static final long TIME_FORMAT_GUESS_BYTES_PER_VALUE = 10000;  // Measured about 3,500.
+    private static final long CHARSET_GUESS_BYTES_PER_KILOBYTE = 64;  // Measured about 20, only constant.
+    private static final long NEWLINE_GUESS_BYTES_PER_KILOBYTE = 64;  // Measured about 20, only constant.
+    private static final long LINE_INDEX_BYTES_PER_KILOBYTE = 768;  // Measured about 260.
+
+    private static final List<String> WORDS = Collections.unmodifiableList(Arrays.asList(
+            "alpha", "bravo", "charlie", "12345", "3.14", "true", "いろは", "にほへと", "東京都", "カタカナ"));
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TestCharsetDetector {
+    @Test
+    public void testDetectSameAsDetectAll() {
+        assertDetectSameAsDetectAll("abc".getBytes(StandardCharsets.UTF_8));
+        assertDetectSameAsDetectAll("いろはにほへとちりぬるを".getBytes(StandardCharsets.UTF_8));
+        assertDetectSameAsDetectAll("いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS")));
+        assertDetectSameAsDetectAll("わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP")));
+        assertDetectSameAsDetectAll("Größe und Gewicht der Äpfel".getBytes(StandardCharsets.ISO_8859_1));
+        assertDetectSameAsDetectAll("Съешь же ещё этих мягких французских булок".getBytes(Charset.forName("KOI8-R")));
+        assertDetectSameAsDetectAll("abc".getBytes(StandardCharsets.UTF_16LE));
+    }
+
+    @Test
+    public void testRange() {
+        final byte[] input = "いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"));
+        final byte[] array = new byte[input.length + 20];
+        Arrays.fill(array, (byte) 0xff);
+        System.arraycopy(input, 0, array, 10, input.length);
+
+        final CharsetMatch match = new CharsetDetector().setText(array, 10, input.length).detect();
+        final CharsetMatch expected = new CharsetDetector().setText(input).detect();
+        assertEquals(expected.getName(), match.getName());
+        assertEquals(expected.getConfidence(), match.getConfidence());
+    }
+
+    @Test
+    public void testRangeOutOfBounds() {
+        assertThrows(IndexOutOfBoundsException.class, () -> new CharsetDetector().setText(new byte[10], 5, 6));
+    }
+
+    @Test
+    public void testSamplingUtf8() {
+        final byte[] input = repeat("いろはにほへと,ちりぬるを\n", 20000).getBytes(StandardCharsets.UTF_8);
+        final CharsetMatch match = new CharsetDetector().setText(input).detect();
+        assertEquals("UTF-8", match.getName());
+        assertEquals(100, match.getConfidence());
+    }
+
+    @Test
+    public void testSamplingAfterAsciiHead() {
+        final String text = repeat("id,name,comment\n", 10000) + repeat("1,いろは,にほへと ちりぬるを\n", 10000);
+        final byte[] input = text.getBytes(Charset.forName("Shift_JIS"));
+        final CharsetMatch match = new CharsetDetector().setSampling(8000, 4).setText(input).detect();
+        assertEquals("Shift_JIS", match.getName());
+    }
+
+    @Test
+    public void testSamplingInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new CharsetDetector().setSampling(8000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new CharsetDetector().setSampling(3, 4));
+    }
+
+    @Test
+    public void testRecognizerOrder() {
+        final byte[] input = "いろはにほへとちりぬるを".getBytes(StandardCharsets.UTF_8);
+        final CharsetDetector detector = new CharsetDetector().setRecognizerOrder("ISO-8859-1", "Shift_JIS", "UTF-8");
+        detector.setText(input);
+        assertEquals("UTF-8", detector.detect().getName());
+    }
+
+    @Test
+    public void testRecognizerOrderInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new CharsetDetector().setRecognizerOrder("UTF-7"));
+    }
+
+    @Test
+    public void testChunks() {
+        final Random random = new Random(42);
+        final byte[][] inputs = {
+            "abc".getBytes(StandardCharsets.UTF_8),
+            new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf, 'a', 'b', 'c' },
+            repeat("いろはにほへと,ちりぬるを\n", 300).getBytes(StandardCharsets.UTF_8),
+            repeat("いろはにほへと,ちりぬるを\n", 300).getBytes(Charset.forName("Shift_JIS")),
+            repeat("わかよたれそ,つねらなむ\n", 300).getBytes(Charset.forName("EUC-JP")),
+            repeat("天地玄黄,宇宙洪荒\n", 300).getBytes(Charset.forName("GB18030")),
+            repeat("Größe und Gewicht der Äpfel\n", 300).getBytes(StandardCharsets.ISO_8859_1),
+            repeat("abc,def\n", 300).getBytes(Charset.forName("UTF-32BE")),
+            repeat("いろはにほへと,ちりぬるを\n", 5000).getBytes(StandardCharsets.UTF_8),  // Over the budget
+        };
+        for (final byte[] input : inputs) {
+            final CharsetMatch[] expected = new CharsetDetector().setSampling(65536, 1).setText(input).detectAll();
+
+            final CharsetDetector detector = new CharsetDetector().startText();
+            for (int position = 0; position < input.length; ) {
+                final int length = Math.min(input.length - position, 1 + random.nextInt(random.nextBoolean() ? 8 : 4000));
+                final byte[] chunk = new byte[length + 2];  // Chunks not at the beginning of an array
+                System.arraycopy(input, position, chunk, 1, length);
+                assertEquals(position + length < 65536, detector.appendText(chunk, 1, length));
+                position += length;
+            }
+            final CharsetMatch[] actual = detector.detectAll();
+
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getName(), actual[i].getName());
+                assertEquals(expected[i].getConfidence(), actual[i].getConfidence());
+            }
+        }
+    }
+
+    @Test
+    public void testTextInChunks() {
+        final Random random = new Random(45);
+        final byte[][] inputs = {
+            repeat("いろはにほへと,ちりぬるを\n", 300).getBytes(StandardCharsets.UTF_8),
+            (repeat("id,name,comment\n", 10000) + repeat("1,いろは,にほへと ちりぬるを\n", 10000)).getBytes(Charset.forName("Shift_JIS")),
+            (repeat("id,name,comment\n", 10000) + repeat("1,わかよ,たれそ つねらなむ\n", 10000)).getBytes(Charset.forName("EUC-JP")),
+            repeat("abc,def\n", 20000).getBytes(Charset.forName("UTF-32LE")),
+        };
+        for (final byte[] input : inputs) {
+            final CharsetMatch[] expected = new CharsetDetector().setText(input).detectAll();
+
+            final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+            for (int position = 0; position < input.length; ) {
+                final int length = Math.min(input.length - position, 1 + random.nextInt(random.nextBoolean() ? 8 : 40000));
+                if (random.nextBoolean()) {
+                    chunks.add(ByteBuffer.wrap(input, position, length));
+                } else {
+                    final ByteBuffer chunk = ByteBuffer.allocateDirect(length + 2);  // Not backed by an array
+                    chunk.position(1);
+                    chunk.put(input, position, length);
+                    chunk.position(1);
+                    chunk.limit(1 + length);
+                    chunks.add(chunk);
+                }
+                position += length;
+            }
+            final CharsetMatch[] actual = new CharsetDetector().setText(chunks).detectAll();
+
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getName(), actual[i].getName());
+                assertEquals(expected[i].getConfidence(), actual[i].getConfidence());
+            }
+            long remaining = 0;
+            for (final ByteBuffer chunk : chunks) {
+                remaining += chunk.remaining();
+            }
+            assertEquals(input.length, remaining);  // The chunks are not consumed.
+        }
+    }
+
+    @Test
+    public void testMarkupInChunks() {
+        final byte[][] inputs = {
+            repeat("<tr><td class=\"name\">いろは</td><td>にほへと</td></tr>\n", 40).getBytes(Charset.forName("Shift_JIS")),
+            repeat("<tr><td class=\"name\">いろは</td><td>にほへと</td></tr>\n", 2000).getBytes(Charset.forName("Shift_JIS")),
+            repeat("<p style=\"margin: 0\">わかよたれそ</p>\n", 3000).getBytes(Charset.forName("EUC-JP")),
+            (repeat("<tr><td class=\"name\">abc</td></tr>\n", 300) + repeat("<tr><td>いろはにほへと</td></tr>\n", 300)).getBytes(Charset.forName("Shift_JIS")),
+        };
+        for (final byte[] input : inputs) {
+            final CharsetDetector expectedDetector = new CharsetDetector();
+            expectedDetector.enableInputFilter(true);
+            final CharsetMatch[] expected = expectedDetector.setText(input).detectAll();
+
+            // Split in the middle of the first tag, and then every 1000 bytes.
+            final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+            chunks.add(ByteBuffer.wrap(input, 0, 10));
+            for (int position = 10; position < input.length; position += 1000) {
+                chunks.add(ByteBuffer.wrap(input, position, Math.min(input.length - position, 1000)));
+            }
+            final CharsetDetector detector = new CharsetDetector();
+            detector.enableInputFilter(true);
+            final CharsetMatch[] actual = detector.setText(chunks).detectAll();
+
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getName(), actual[i].getName());
+                assertEquals(expected[i].getConfidence(), actual[i].getConfidence());
+            }
+        }
+    }
+
+    @Test
+    public void testWindows() {
+        final byte[] ascii = repeat("id,name,comment\n", 10000).getBytes(StandardCharsets.US_ASCII);
+        final byte[] sjis = repeat("1,いろは,にほへと ちりぬるを\n", 10000).getBytes(Charset.forName("Shift_JIS"));
+
+        // The windows are counted as if they were concatenated within the budget.
+        final List<ByteBuffer> small = Arrays.asList(ByteBuffer.wrap(ascii, 0, 1000), ByteBuffer.wrap(sjis, 0, 1000));
+        final byte[] concatenated = new byte[2000];
+        System.arraycopy(ascii, 0, concatenated, 0, 1000);
+        System.arraycopy(sjis, 0, concatenated, 1000, 1000);
+        assertEquals(new CharsetDetector().setText(concatenated).detect().getName(), new CharsetDetector().setWindows(small).detect().getName());
+
+        // Every window takes a share of the budget, while only the head would be counted if they were concatenated.
+        final List<ByteBuffer> large = Arrays.asList(ByteBuffer.wrap(ascii), ByteBuffer.wrap(ascii), ByteBuffer.wrap(sjis));
+        assertEquals("Shift_JIS", new CharsetDetector().setWindows(large).detect().getName());
+
+        // More windows than the filtered input can take.
+        final ArrayList<ByteBuffer> many = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            many.add(ByteBuffer.wrap(sjis, i * 16, 16));
+        }
+        assertEquals("Shift_JIS", new CharsetDetector().setWindows(many).detect().getName());
+    }
+
+    @Test
+    public void testChunksWithoutStart() {
+        assertThrows(IllegalStateException.class, () -> new CharsetDetector().appendText(new byte[10], 0, 10));
+        final CharsetDetector detector = new CharsetDetector().startText();
+        detector.setText(new byte[10]);
+        assertThrows(IllegalStateException.class, () -> detector.appendText(new byte[10], 0, 10));
+    }
+
+    private static String repeat(final String s, final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    private static void assertDetectSameAsDetectAll(final byte[] input) {
+        final CharsetMatch[] all = new CharsetDetector().setText(input).detectAll();
+        final CharsetMatch best = new CharsetDetector().setText(input).detect();
+        assertEquals(all[0].getName(), best.getName());
+        assertEquals(all[0].getConfidence(), best.getConfidence());
+        assertEquals(all[0].getLanguage(), best.getLanguage());
+    }
+}
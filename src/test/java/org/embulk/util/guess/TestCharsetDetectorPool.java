@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class TestCharsetDetectorPool {
+    @Test
+    public void testReuse() {
+        final CharsetDetectorPool pool = new CharsetDetectorPool(1);
+        final CharsetDetector detector = pool.acquire();
+        assertNotSame(detector, pool.acquire());
+        pool.release(detector);
+        assertSame(detector, pool.acquire());
+    }
+
+    @Test
+    public void testResetBetweenInputs() throws IOException {
+        final CharsetDetectorPool pool = new CharsetDetectorPool(1);
+
+        final CharsetDetector first = pool.acquire();
+        first.setText(new ByteArrayInputStream("いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"))));
+        assertEquals("Shift_JIS", first.detect().getName());
+        pool.release(first);
+
+        final CharsetDetector second = pool.acquire();
+        second.setText(new ByteArrayInputStream("わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP"))));
+        assertEquals("EUC-JP", second.detect().getName());
+        pool.release(second);
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final CharsetDetectorPool pool = new CharsetDetectorPool(2);
+        final byte[] utf8 = "いろはにほへとちりぬるを".getBytes(StandardCharsets.UTF_8);
+        final byte[] sjis = "いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final byte[] input = (i % 2 == 0) ? utf8 : sjis;
+                futures.add(executor.submit(() -> {
+                    final CharsetDetector detector = pool.acquire();
+                    try {
+                        return detector.setText(input).detect().getName();
+                    } finally {
+                        pool.release(detector);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals((i % 2 == 0) ? "UTF-8" : "Shift_JIS", futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
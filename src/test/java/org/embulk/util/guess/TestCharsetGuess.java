@@ -17,12 +17,24 @@
 package org.embulk.util.guess;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
 import org.embulk.config.ConfigDiff;
+import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestCharsetGuess {
     @Test
@@ -32,10 +44,103 @@ public class TestCharsetGuess {
         assertCharset("EUC-JP", "わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP")));
     }
 
-    private static void assertCharset(final String expectedCharset, final byte[] sample) {
-        final ConfigDiff configDiff = CharsetGuess.of(CONFIG_MAPPER_FACTORY).guess(new FakeBufferImpl(sample));
+    @Test
+    public void testCandidates() {
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY, Arrays.asList("UTF-8", "MS932", "EUC-JP", "ISO-2022-JP"));
+        assertCharset("UTF-8", guess, "abc".getBytes(StandardCharsets.UTF_8));
+        assertCharset("MS932", guess, "いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS")));
+        assertCharset("EUC-JP", guess, "わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP")));
+        assertCharset("ISO-2022-JP", guess, "いろはにほへとちりぬるを".getBytes(Charset.forName("ISO-2022-JP")));
+    }
+
+    @Test
+    public void testCandidatesExcluding() {
+        final byte[] sample = "いろはにほへとちりぬるを".getBytes(Charset.forName("ISO-2022-JP"));
+        assertCharset("ISO-2022-JP", sample);
+        assertCharset("UTF-8", CharsetGuess.of(CONFIG_MAPPER_FACTORY, Arrays.asList("UTF-8", "MS932")), sample);
+    }
+
+    @Test
+    public void testCandidatesInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> CharsetGuess.of(CONFIG_MAPPER_FACTORY, Arrays.asList("UTF-8", "x-unknown")));
+        assertThrows(IllegalArgumentException.class, () -> CharsetGuess.of(CONFIG_MAPPER_FACTORY).withRecognizerOrder(Arrays.asList("x-unknown")));
+    }
+
+    @Test
+    public void testGuessAll() {
+        final ArrayList<Buffer> samples = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            samples.add(new FakeBufferImpl(("いろはにほへとちりぬるを" + i).getBytes(Charset.forName("Shift_JIS"))));
+        }
+        samples.add(new FakeBufferImpl("わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP"))));
+        samples.add(new FakeBufferImpl("いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"))));
+
+        final BulkCharsetGuessResult result = CharsetGuess.of(CONFIG_MAPPER_FACTORY).guessAll(samples);
+        assertEquals(Optional.of("MS932"), result.getConsensus());
+        assertEquals(4, result.getFullGuessCount());  // The first three, and EUC-JP
+        assertEquals(samples.size(), result.getResults().size());
+        for (int i = 0; i < samples.size(); i++) {
+            assertEquals(CharsetGuess.of(CONFIG_MAPPER_FACTORY).guess(samples.get(i)), result.getResults().get(i));
+        }
+    }
+
+    @Test
+    public void testGuessAllWithoutConsensus() {
+        final ArrayList<Buffer> samples = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            samples.add(new FakeBufferImpl("いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"))));
+            samples.add(new FakeBufferImpl("わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP"))));
+        }
+
+        final BulkCharsetGuessResult result = CharsetGuess.of(CONFIG_MAPPER_FACTORY).guessAll(samples);
+        assertFalse(result.getConsensus().isPresent());
+        assertEquals(6, result.getFullGuessCount());
+        assertCharset("MS932", result.getResults().get(4));
+        assertCharset("EUC-JP", result.getResults().get(5));
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        final Path file = this.directory.resolve("sjis.txt");
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("いろはにほへとちりぬるを\n");
+        }
+        final byte[] bytes = text.toString().getBytes(Charset.forName("Shift_JIS"));
+        Files.write(file, bytes);
+
+        assertCharset("MS932", guess.guess(file, 1 << 20));
+        assertCharset("MS932", guess.guess(file, 100));
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(10);
+            assertCharset("MS932", guess.guess(channel, 1 << 16));
+            assertEquals(10, channel.position());
+        }
+
+        // The same as the head copied into Buffer.
+        assertEquals(guess.guess(new FakeBufferImpl(Arrays.copyOf(bytes, 4096))), guess.guess(file, 4096));
+
+        final Path empty = this.directory.resolve("empty.txt");
+        Files.write(empty, new byte[0]);
+        assertCharset("UTF-8", guess.guess(empty, 4096));
+        assertThrows(IllegalArgumentException.class, () -> guess.guess(file, -1));
+    }
+
+    private static void assertCharset(final String expectedCharset, final ConfigDiff configDiff) {
         assertEquals(expectedCharset, configDiff.getNested("parser").get(String.class, "charset"));
     }
 
+    private static void assertCharset(final String expectedCharset, final byte[] sample) {
+        assertCharset(expectedCharset, CharsetGuess.of(CONFIG_MAPPER_FACTORY), sample);
+    }
+
+    private static void assertCharset(final String expectedCharset, final CharsetGuess guess, final byte[] sample) {
+        assertCharset(expectedCharset, guess.guess(new FakeBufferImpl(sample)));
+    }
+
+    @TempDir
+    Path directory;
+
     private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
 }
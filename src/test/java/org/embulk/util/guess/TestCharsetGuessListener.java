@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.jupiter.api.Test;
+
+public class TestCharsetGuessListener {
+    @Test
+    public void testGuess() {
+        final byte[] bytes = "いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"));
+        final RecordingListener listener = new RecordingListener();
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+
+        assertEquals(guess.guess(new FakeBufferImpl(bytes)), guess.withListener(listener).guess(new FakeBufferImpl(bytes)));
+        assertEquals(1, listener.inputsCollected);
+        assertEquals(bytes.length, listener.bytesSampled);
+        assertTrue(listener.recognizers.contains("Shift_JIS"));
+        assertEquals(listener.recognizers.size(), listener.confidences.size());
+        assertEquals("Shift_JIS", listener.detectedCharset);
+        assertEquals(listener.confidences.get(listener.recognizers.indexOf("Shift_JIS")).intValue(), listener.detectedConfidence);
+        for (final long elapsedNanos : listener.elapsedNanos) {
+            assertTrue(elapsedNanos >= 0);
+        }
+
+        // The listener is not carried over to the pooled detectors used by the guess without the listener.
+        guess.guess(new FakeBufferImpl(bytes));
+        assertEquals(1, listener.inputsCollected);
+    }
+
+    @Test
+    public void testNoMatch() {
+        final RecordingListener listener = new RecordingListener();
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY, Arrays.asList("UTF-16BE")).withListener(listener);
+
+        guess.guess(new FakeBufferImpl("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Arrays.asList("UTF-16BE"), listener.recognizers);
+        assertEquals(Arrays.asList(0), listener.confidences);
+        assertNull(listener.detectedCharset);
+        assertEquals(0, listener.detectedConfidence);
+    }
+
+    @Test
+    public void testRecognizerOrder() {
+        final byte[] bytes = "いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"));
+        final RecordingListener listener = new RecordingListener();
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        final CharsetGuess ordered = guess.withListener(listener).withRecognizerOrder(Arrays.asList("MS932", "EUC-JP"));
+
+        assertEquals(guess.guess(new FakeBufferImpl(bytes)), ordered.guess(new FakeBufferImpl(bytes)));
+        assertEquals(Arrays.asList("Shift_JIS", "EUC-JP"), listener.recognizers.subList(0, 2));
+        assertEquals("Shift_JIS", listener.detectedCharset);
+
+        // The candidates are tried in their order.
+        final RecordingListener candidateListener = new RecordingListener();
+        CharsetGuess.of(CONFIG_MAPPER_FACTORY, Arrays.asList("EUC-JP", "MS932")).withListener(candidateListener).guess(new FakeBufferImpl(bytes));
+        assertEquals(Arrays.asList("EUC-JP", "Shift_JIS"), candidateListener.recognizers);
+    }
+
+    @Test
+    public void testIncremental() {
+        final RecordingListener listener = new RecordingListener();
+        final IncrementalCharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY).withListener(listener).startIncremental();
+
+        guess.update(new FakeBufferImpl("わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP"))));
+        guess.currentBest();
+        guess.update(new FakeBufferImpl("うゐのおくやまけふこえて".getBytes(Charset.forName("EUC-JP"))));
+        guess.finish();
+        assertEquals(2, listener.inputsCollected);
+        assertEquals("EUC-JP", listener.detectedCharset);
+    }
+
+    private static class RecordingListener implements CharsetGuessListener {
+        @Override
+        public void onInputCollected(final long elapsedNanos, final int bytesExamined) {
+            this.inputsCollected++;
+            this.bytesSampled = bytesExamined;
+            this.elapsedNanos.add(elapsedNanos);
+        }
+
+        @Override
+        public void onRecognizerMatched(final String recognizerName, final long elapsedNanos, final int bytesExamined, final int confidence) {
+            this.recognizers.add(recognizerName);
+            this.confidences.add(confidence);
+            this.elapsedNanos.add(elapsedNanos);
+        }
+
+        @Override
+        public void onDetected(final String charsetName, final int confidence) {
+            this.detectedCharset = charsetName;
+            this.detectedConfidence = confidence;
+        }
+
+        private int inputsCollected;
+        private int bytesSampled;
+        private final List<Long> elapsedNanos = new ArrayList<>();
+        private final List<String> recognizers = new ArrayList<>();
+        private final List<Integer> confidences = new ArrayList<>();
+        private String detectedCharset;
+        private int detectedConfidence;
+    }
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
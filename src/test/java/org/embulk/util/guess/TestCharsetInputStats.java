@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TestCharsetInputStats {
+    @Test
+    public void testUtf8() {
+        final CharsetInputStats stats = collect("aいろは".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, stats.utf8.valid);
+        assertEquals(0, stats.utf8.invalid);
+        assertFalse(stats.utf8.hasBom);
+    }
+
+    @Test
+    public void testUtf8Bom() {
+        final CharsetInputStats stats = collect(new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf, 'a' });
+        assertEquals(1, stats.utf8.valid);
+        assertTrue(stats.utf8.hasBom);
+    }
+
+    @Test
+    public void testUtf8BrokenSequence() {
+        // 0xE3 breaks the sequence started by 0xC3, and is consumed as a part of the broken sequence.
+        final CharsetInputStats stats = collect(new byte[] { (byte) 0xc3, (byte) 0xe3, (byte) 0x81, (byte) 0x82 });
+        assertEquals(0, stats.utf8.valid);
+        assertEquals(3, stats.utf8.invalid);
+    }
+
+    @Test
+    public void testUtf8TruncatedAtEnd() {
+        final CharsetInputStats stats = collect(new byte[] { 'a', (byte) 0xe3, (byte) 0x81 });
+        assertEquals(0, stats.utf8.valid);
+        assertEquals(0, stats.utf8.invalid);
+    }
+
+    @Test
+    public void testUtf8AfterAsciiRun() {
+        final CharsetInputStats stats = collect("abcdefghijklmいろはnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8));
+        assertEquals(3, stats.utf8.valid);
+        assertEquals(0, stats.utf8.invalid);
+        assertEquals(8, stats.utf32be.valid + stats.utf32be.invalid);
+    }
+
+    @Test
+    public void testShiftJisAfterAsciiRun() {
+        final CharsetInputStats stats = collect("abcdefghijklmいろはnopqrstuvwxyz".getBytes(Charset.forName("Shift_JIS")));
+        assertEquals(29, stats.sjis.totalCharCount);
+        assertEquals(3, stats.sjis.doubleByteCharCount);
+        assertEquals(0, stats.sjis.badCharCount);
+    }
+
+    @Test
+    public void testUtf32() {
+        final CharsetInputStats stats = collect("abc".getBytes(Charset.forName("UTF-32BE")));
+        assertEquals(3, stats.utf32be.valid);
+        assertEquals(0, stats.utf32be.invalid);
+        assertEquals(0, stats.utf32le.valid);
+        assertEquals(3, stats.utf32le.invalid);
+    }
+
+    @Test
+    public void testUtf32Windows() {
+        final byte[] input = "abcdefgh".getBytes(Charset.forName("UTF-32BE"));
+        final CharsetInputStats stats = new CharsetInputStats();
+        stats.resetRaw(input.length);
+        stats.collectRawWindow(input, 0, 0, 6);  // "a", and a half of "b" not counted
+        stats.collectRawWindow(input, 0, 10, 12);  // A half of "c" not counted, "d", "e"
+        assertEquals(3, stats.utf32be.valid);
+        assertEquals(0, stats.utf32be.invalid);
+    }
+
+    @Test
+    public void testShiftJis() {
+        final CharsetInputStats stats = collect("aいろは".getBytes(Charset.forName("Shift_JIS")));
+        assertEquals(4, stats.sjis.totalCharCount);
+        assertEquals(3, stats.sjis.doubleByteCharCount);
+        assertEquals(0, stats.sjis.badCharCount);
+        assertFalse(stats.sjis.bailedOut);
+    }
+
+    @Test
+    public void testEucJp() {
+        final CharsetInputStats stats = collect("わかよたれそ".getBytes(Charset.forName("EUC-JP")));
+        assertEquals(6, stats.eucJp.doubleByteCharCount);
+        assertEquals(6, stats.eucKr.doubleByteCharCount);
+        assertEquals(0, stats.eucJp.badCharCount);
+    }
+
+    @Test
+    public void testBailOut() {
+        final CharsetInputStats stats = collect(new byte[] { (byte) 0x81, 0x20, (byte) 0x81, 0x21, 'a', 'b' });
+        assertEquals(2, stats.sjis.badCharCount);
+        assertTrue(stats.sjis.bailedOut);
+        assertEquals(2, stats.sjis.totalCharCount);  // Not counted any more after bailing out.
+    }
+
+    @Test
+    public void testIso2022Jp() {
+        final CharsetInputStats stats = collect("a日本b".getBytes(Charset.forName("ISO-2022-JP")));
+        assertEquals(2, stats.iso2022jp.hits);
+        assertEquals(0, stats.iso2022jp.misses);
+        assertEquals(0, stats.iso2022kr.hits);
+        assertEquals(2, stats.iso2022kr.misses);
+    }
+
+    @Test
+    public void testCommonCharBitmap() {
+        final int[][] tables = {
+            CharsetRecog_mbcs.CharsetRecog_sjis.commonChars,
+            CharsetRecog_mbcs.CharsetRecog_big5.commonChars,
+            CharsetRecog_mbcs.CharsetRecog_euc.CharsetRecog_euc_jp.commonChars,
+            CharsetRecog_mbcs.CharsetRecog_euc.CharsetRecog_euc_kr.commonChars,
+            CharsetRecog_mbcs.CharsetRecog_gb_18030.commonChars,
+        };
+        for (final int[] table : tables) {
+            final long[] bits = CharsetInputStats.bitmapOf(table);
+            for (int charValue = 0; charValue <= 0xffff; charValue++) {
+                assertEquals(Arrays.binarySearch(table, charValue) >= 0, CharsetInputStats.isCommonChar(bits, charValue));
+            }
+            assertFalse(CharsetInputStats.isCommonChar(bits, 0x81308130));  // A 4-byte GB18030 character
+            assertFalse(CharsetInputStats.isCommonChar(bits, table[0] | 0x10000));
+        }
+    }
+
+    private static CharsetInputStats collect(final byte[] input) {
+        final CharsetInputStats stats = new CharsetInputStats();
+        stats.collectFiltered(input, input.length);
+        stats.collectRaw(input, 0, input.length);
+        return stats;
+    }
+}
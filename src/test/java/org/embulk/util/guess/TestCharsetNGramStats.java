@@ -0,0 +1,72 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class TestCharsetNGramStats {
+    @Test
+    public void testSameAsBinarySearch() {
+        final byte[] input = "The quick brown fox jumps over the lazy dog, and then  the dog sleeps.".getBytes(StandardCharsets.ISO_8859_1);
+        final CharsetNGramStats stats = new CharsetNGramStats();
+        for (final CharsetRecog_sbcs.NGramsPlusLang ngrams : CharsetRecog_sbcs.CharsetRecog_8859_1.ngrams_8859_1) {
+            assertEquals(confidenceByBinarySearch(input, ngrams.fNGrams), stats.confidence(input, input.length, ngrams.fNGrams));
+        }
+    }
+
+    @Test
+    public void testReset() {
+        final byte[] english = "the quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.ISO_8859_1);
+        final byte[] digits = "0123456789".getBytes(StandardCharsets.ISO_8859_1);
+        final int[] ngrams = CharsetRecog_sbcs.CharsetRecog_8859_1.ngrams_8859_1[0].fNGrams;  // English
+
+        final CharsetNGramStats stats = new CharsetNGramStats();
+        final int confidence = stats.confidence(english, english.length, ngrams);
+        assertEquals(confidence, stats.confidence(digits, digits.length, ngrams));  // Not parsed again before reset().
+        stats.reset();
+        assertEquals(confidenceByBinarySearch(digits, ngrams), stats.confidence(digits, digits.length, ngrams));
+    }
+
+    /**
+     * Computes the confidence in the same way as the original ICU4J, which searches the table for each n-gram.
+     */
+    private static int confidenceByBinarySearch(final byte[] input, final int[] ngrams) {
+        final byte[] byteMap = CharsetRecog_sbcs.CharsetRecog_8859_1.byteMap;
+        int ngram = 0;
+        int ngramCount = 0;
+        int hitCount = 0;
+        boolean ignoreSpace = false;
+        for (int i = 0; i <= input.length; i++) {
+            final byte mapped = (i < input.length) ? byteMap[input[i] & 0xff] : 0x20;
+            if (mapped == 0 || (i < input.length && mapped == 0x20 && ignoreSpace)) {
+                continue;
+            }
+            ignoreSpace = (mapped == 0x20);
+            ngram = ((ngram << 8) + (mapped & 0xff)) & 0xffffff;
+            ngramCount++;
+            if (Arrays.binarySearch(ngrams, ngram) >= 0) {
+                hitCount++;
+            }
+        }
+        final double rawPercent = (double) hitCount / (double) ngramCount;
+        return rawPercent > 0.33 ? 98 : (int) (rawPercent * 300.0);
+    }
+}
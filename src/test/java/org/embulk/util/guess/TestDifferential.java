@@ -0,0 +1,151 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.guess.reference.CharsetDetection;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the optimized guessers return identical results to the frozen reference in {@code reference}, for inputs
+ * generated at random by {@link DifferentialCorpus}.
+ *
+ * <p>Each case is generated from a seed of its own, which is in the failure message to reproduce the case. The number
+ * of cases is small by default to keep {@code ./gradlew test} fast. {@code ./gradlew differentialTest} runs millions of
+ * cases, and {@code -PdifferentialCases} and {@code -PdifferentialSeed} change the number and the base seed.
+ */
+public class TestDifferential {
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testCharsetDetector() {
+        // The optimized detector samples a large input in windows by default, which is out of the reference.
+        final CharsetDetector detector = new CharsetDetector().setSampling(Integer.MAX_VALUE, 1);
+        final CharsetDetector ibmDetector = new CharsetDetector().setSampling(Integer.MAX_VALUE, 1);
+        for (final String charset : CharsetDetection.IBM_CHARSETS) {
+            ibmDetector.setDetectableCharset(charset, true);
+        }
+
+        // Detecting bytes costs much more than guessing a value.
+        for (int i = 0; i < CASES / CHARSET_CASE_RATIO; i++) {
+            final long seed = seedOf(1, i);
+            final DifferentialCorpus corpus = new DifferentialCorpus(seed);
+            final byte[] input = corpus.bytes();
+            final String message = "seed: " + seed + ", length: " + input.length + ", head: " + head(input);
+
+            final String[] expected = CharsetDetection.detectAll(input, false);
+            assertArrayEquals(expected, describeAll(detector.setText(input).detectAll()), message);
+            assertArrayEquals(CharsetDetection.detectAll(input, true), describeAll(ibmDetector.setText(input).detectAll()), message);
+            assertEquals(expected.length == 0 ? null : expected[0], detectInMiddle(input, corpus.random()), message);
+            assertArrayEquals(expected, detectAllInChunks(detector, input, corpus.random()), message);
+        }
+    }
+
+    @Test
+    public void testTimeFormatGuess() {
+        final TimeFormatGuess timeFormatGuess = TimeFormatGuess.of();
+        final org.embulk.util.guess.reference.TimeFormatGuess reference = org.embulk.util.guess.reference.TimeFormatGuess.of();
+        for (int i = 0; i < CASES; i++) {
+            final long seed = seedOf(2, i);
+            final DifferentialCorpus corpus = new DifferentialCorpus(seed);
+            final List<Object> values = corpus.timestamps(1 + corpus.random().nextInt(i % 10 == 0 ? 100 : 5));
+            assertEquals(reference.guess(values), timeFormatGuess.guess(values), "seed: " + seed + ", values: " + values);
+        }
+    }
+
+    @Test
+    public void testSchemaGuess() {
+        final SchemaGuess schemaGuess = SchemaGuess.of(CONFIG_MAPPER_FACTORY);
+        final org.embulk.util.guess.reference.SchemaGuess reference = org.embulk.util.guess.reference.SchemaGuess.of(CONFIG_MAPPER_FACTORY);
+        for (int i = 0; i < CASES / SCHEMA_CASE_RATIO; i++) {
+            final long seed = seedOf(3, i);
+            final DifferentialCorpus corpus = new DifferentialCorpus(seed);
+            final List<List<Object>> records = corpus.records(1 + corpus.random().nextInt(20), 1 + corpus.random().nextInt(6));
+
+            final ArrayList<String> expected = new ArrayList<>();
+            for (final org.embulk.util.guess.reference.GuesstimatedType type : reference.typesFromListRecords(records)) {
+                expected.add(type.toString() + ":" + type.getFormatOrTimeValue());
+            }
+            final ArrayList<String> actual = new ArrayList<>();
+            for (final GuesstimatedType type : schemaGuess.typesFromListRecords(records)) {
+                actual.add(type.toString() + ":" + type.getFormatOrTimeValue());
+            }
+            assertEquals(expected, actual, "seed: " + seed + ", records: " + records);
+        }
+    }
+
+    /**
+     * Detects the best match in the middle of a larger array, not to depend on the offset.
+     */
+    private static String detectInMiddle(final byte[] input, final Random random) {
+        final int offset = random.nextInt(8);
+        final byte[] padded = new byte[offset + input.length + random.nextInt(8)];
+        Arrays.fill(padded, (byte) 0xa4);
+        System.arraycopy(input, 0, padded, offset, input.length);
+        final CharsetMatch match = new CharsetDetector().setSampling(Integer.MAX_VALUE, 1).setText(padded, offset, input.length).detect();
+        return match == null ? null : CharsetDetection.describe(match.getName(), match.getConfidence(), match.getLanguage());
+    }
+
+    /**
+     * Detects all the matches from the input split into chunks at random, which may split a character.
+     */
+    private static String[] detectAllInChunks(final CharsetDetector detector, final byte[] input, final Random random) {
+        detector.startText();
+        int offset = 0;
+        while (offset < input.length) {
+            final int length = Math.min(input.length - offset, 1 + random.nextInt(random.nextBoolean() ? 7 : 4096));
+            detector.appendText(input, offset, length);
+            offset += length;
+        }
+        return describeAll(detector.detectAll());
+    }
+
+    private static String[] describeAll(final CharsetMatch[] matches) {
+        final String[] described = new String[matches.length];
+        for (int i = 0; i < matches.length; i++) {
+            described[i] = CharsetDetection.describe(matches[i].getName(), matches[i].getConfidence(), matches[i].getLanguage());
+        }
+        return described;
+    }
+
+    private static String head(final byte[] input) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(input.length, 32); i++) {
+            builder.append(String.format(Locale.ENGLISH, "%02x", input[i] & 0xff));
+        }
+        return builder.toString();
+    }
+
+    private static long seedOf(final int test, final int index) {
+        return (SEED * 31 + test) * 1000000007L + index;
+    }
+
+    private static final long SEED = Long.getLong("org.embulk.util.guess.differential.seed", 50L);
+    private static final int CASES = Integer.getInteger("org.embulk.util.guess.differential.cases", 5000);
+
+    private static final int CHARSET_CASE_RATIO = 20;
+    private static final int SCHEMA_CASE_RATIO = 4;
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestFileSampler {
+    @Test
+    public void testSpread() throws IOException {
+        // The second column is populated only in the second half of the file.
+        final Path file = this.directory.resolve("spread.csv");
+        Files.write(file, csv(10000, 5000, "\r\n").getBytes(StandardCharsets.UTF_8));
+
+        final List<String> lines = FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 4).toLines(configWithParser("UTF-8", "CRLF"), file);
+        assertLines(lines, 10000);
+        assertTrue(lines.contains("0,"));
+        assertTrue(lines.contains("9999,value9999"));
+        assertTrue(lines.size() < 1000);
+
+        // Only from the head.
+        final List<String> headLines = FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 1).toLines(configWithParser("UTF-8", "CRLF"), file);
+        assertEquals(LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLines(configWithParser("UTF-8", "CRLF"), file, 1024), headLines);
+        for (final String line : headLines) {
+            assertTrue(line.endsWith(","));
+        }
+    }
+
+    @Test
+    public void testSmallFile() throws IOException {
+        final Path file = this.directory.resolve("small.csv");
+        Files.write(file, csv(100, 50, "\n").getBytes(StandardCharsets.UTF_8));
+        final ConfigSource config = configWithParser("UTF-8", "LF");
+
+        final LineGuessHelper helper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+        assertEquals(helper.toLines(config, file, Integer.MAX_VALUE), FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 4).toLines(config, file));
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(100, FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 4).toLines(config, channel).size());
+        }
+    }
+
+    @Test
+    public void testLineDelimiters() throws IOException {
+        for (final String newline : Arrays.asList("CR", "LF", "CRLF")) {
+            final String newlineString = newline.replace("CR", "\r").replace("LF", "\n");
+            final Path file = this.directory.resolve("newline" + newline + ".csv");
+            Files.write(file, csv(10000, 5000, newlineString).getBytes(StandardCharsets.UTF_8));
+
+            final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+            parserConfig.set("charset", "UTF-8");
+            parserConfig.set("newline", newline);
+            parserConfig.set("line_delimiter_recognized", newline);
+            final ConfigSource recognized = CONFIG_MAPPER_FACTORY.newConfigSource();
+            recognized.setNested("parser", parserConfig);
+            assertLines(FileSampler.of(CONFIG_MAPPER_FACTORY, 1000, 5).toLines(recognized, file), 10000);
+            assertLines(FileSampler.of(CONFIG_MAPPER_FACTORY, 1001, 5).toLines(configWithParser("UTF-8", newline), file), 10000);
+        }
+    }
+
+    @Test
+    public void testUtf16() throws IOException {
+        final Path file = this.directory.resolve("utf16.csv");
+        Files.write(file, csv(10000, 5000, "\n").getBytes(StandardCharsets.UTF_16LE));
+        assertLines(FileSampler.of(CONFIG_MAPPER_FACTORY, 1023, 3).toLines(configWithParser("UTF-16LE", "LF"), file), 10000);
+
+        // In little endian only by the byte order mark at the head.
+        final Path bomFile = this.directory.resolve("utf16bom.csv");
+        Files.write(bomFile, ("\ufeff" + csv(10000, 5000, "\n")).getBytes(StandardCharsets.UTF_16LE));
+        assertLines(FileSampler.of(CONFIG_MAPPER_FACTORY, 1023, 3).toLines(configWithParser("UTF-16", "LF"), bomFile), 10000);
+    }
+
+    @Test
+    public void testCharsetInWindows() throws IOException {
+        // The head is only in ASCII.
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(i < 1000 ? "abcdefg\r\n" : "いろはにほへと\r\n");
+        }
+        final Path file = this.directory.resolve("sjis.txt");
+        Files.write(file, text.toString().getBytes(Charset.forName("Shift_JIS")));
+
+        final List<String> lines = FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 3).toLines(CONFIG_MAPPER_FACTORY.newConfigSource(), file);
+        assertTrue(lines.contains("abcdefg"));
+        assertTrue(lines.contains("いろはにほへと"));
+    }
+
+    @Test
+    public void testCharsetInLargeWindows() throws IOException {
+        // The windows are larger than 64 KiB in total, and the first 64 KiB are only in ASCII.
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 80000; i++) {
+            text.append(i < 40000 ? "abcdefg\r\n" : "いろはにほへと\r\n");
+        }
+        final Path file = this.directory.resolve("sjis.txt");
+        Files.write(file, text.toString().getBytes(Charset.forName("Shift_JIS")));
+
+        final List<String> lines = FileSampler.of(CONFIG_MAPPER_FACTORY, 65536, 5).toLines(CONFIG_MAPPER_FACTORY.newConfigSource(), file);
+        assertTrue(lines.contains("abcdefg"));
+        assertTrue(lines.contains("いろはにほへと"));
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> FileSampler.of(CONFIG_MAPPER_FACTORY, 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 0));
+
+        final Path file = this.directory.resolve("invalid.csv");
+        Files.write(file, csv(10000, 5000, "\n").getBytes(StandardCharsets.UTF_8));
+        assertNull(FileSampler.of(CONFIG_MAPPER_FACTORY, 1024, 4).toLines(configWithParser("UTF-8", "FOO"), file));
+    }
+
+    /**
+     * Asserts that the lines are all complete, distinct, and in the order of the file.
+     */
+    private static void assertLines(final List<String> lines, final int rows) {
+        assertTrue(lines.size() > 0);
+        assertEquals(lines.size(), new HashSet<>(lines).size());
+        int previous = -1;
+        for (final String line : lines) {
+            final int row = Integer.parseInt(line.substring(0, line.indexOf(',')));
+            assertTrue(row > previous);
+            assertTrue(row < rows);
+            assertEquals(row + "," + (row < rows / 2 ? "" : "value" + row), line);
+            previous = row;
+        }
+    }
+
+    private static String csv(final int rows, final int populatedFrom, final String newline) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            builder.append(i).append(',');
+            if (i >= populatedFrom) {
+                builder.append("value").append(i);
+            }
+            builder.append(newline);
+        }
+        return builder.toString();
+    }
+
+    private static ConfigSource configWithParser(final String charset, final String newline) {
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", charset);
+        parserConfig.set("newline", newline);
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.setNested("parser", parserConfig);
+        return config;
+    }
+
+    @TempDir
+    Path directory;
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
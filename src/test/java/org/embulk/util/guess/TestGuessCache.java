@@ -0,0 +1,177 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.embulk.config.ConfigDiff;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestGuessCache {
+    @Test
+    public void testCharset() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        final FakeBufferImpl sample = new FakeBufferImpl("いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS")));
+
+        final ConfigDiff guessed = cache.guessCharset(guess, sample);
+        assertEquals(guess.guess(sample), guessed);
+        assertEquals(1, listEntries().size());
+
+        assertEquals(guessed, cache.guessCharset(guess, sample));
+        assertEquals(guessed, GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20).guessCharset(guess, sample));
+        assertEquals(1, listEntries().size());
+
+        // A guess limited to candidates is cached separately.
+        cache.guessCharset(CharsetGuess.of(CONFIG_MAPPER_FACTORY, Arrays.asList("UTF-8")), sample);
+        assertEquals(2, listEntries().size());
+    }
+
+    @Test
+    public void testNewlineKeyedByConfig() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        final NewlineGuess guess = NewlineGuess.of(CONFIG_MAPPER_FACTORY);
+        final FakeBufferImpl sample = new FakeBufferImpl("a,b\r\nc,d\r\n".getBytes(StandardCharsets.UTF_8));
+
+        final ConfigSource withCharset = CONFIG_MAPPER_FACTORY.newConfigSource();
+        withCharset.getNestedOrSetEmpty("parser").set("charset", "UTF-8");
+        final ConfigSource withoutCharset = CONFIG_MAPPER_FACTORY.newConfigSource();
+
+        assertEquals(guess.guess(withCharset, sample), cache.guessNewline(guess, withCharset, sample));
+        assertEquals(guess.guess(withoutCharset, sample), cache.guessNewline(guess, withoutCharset, sample));
+        assertEquals(2, listEntries().size());
+        assertEquals(guess.guess(withCharset, sample), cache.guessNewline(guess, withCharset, sample));
+    }
+
+    @Test
+    public void testSchema() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        final SchemaGuess guess = SchemaGuess.of(CONFIG_MAPPER_FACTORY);
+        final List<String> columnNames = Arrays.asList("id", "name");
+        final List<List<Object>> samples = new ArrayList<>();
+        samples.add(Arrays.asList((Object) "1", "foo"));
+        samples.add(Arrays.asList((Object) "2", "bar"));
+
+        final List<ConfigDiff> expected = guess.fromListRecords(columnNames, samples);
+        assertEquals(expected, cache.guessSchema(guess, columnNames, samples));
+        assertEquals(expected, cache.guessSchema(guess, columnNames, samples));
+        assertEquals(1, listEntries().size());
+
+        // The same string representations in different classes are different samples.
+        final List<List<Object>> longSamples = new ArrayList<>();
+        longSamples.add(Arrays.asList((Object) 1L, "foo"));
+        longSamples.add(Arrays.asList((Object) 2L, "bar"));
+        assertEquals(guess.fromListRecords(columnNames, longSamples), cache.guessSchema(guess, columnNames, longSamples));
+        assertEquals(2, listEntries().size());
+    }
+
+    @Test
+    public void testTimeFormatNotGuessed() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        final List<Object> texts = Arrays.asList((Object) "foo", "bar");
+        assertNull(cache.guessTimeFormat(TimeFormatGuess.of(), texts));
+        assertNull(cache.guessTimeFormat(TimeFormatGuess.of(), texts));
+        assertEquals(1, listEntries().size());
+    }
+
+    @Test
+    public void testTimeFormatIteratedOnce() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        final List<Object> texts = Arrays.asList((Object) "2026-10-18 12:34:56", "2026-10-19 01:02:03");
+        final String expected = TimeFormatGuess.of().guess(texts);
+
+        // An Iterable which can be iterated only once, such as one over a stream.
+        final Iterator<Object> iterator = texts.iterator();
+        final Iterable<Object> once = () -> iterator;
+        assertEquals(expected, cache.guessTimeFormat(TimeFormatGuess.of(), once));
+        assertEquals(expected, cache.guessTimeFormat(TimeFormatGuess.of(), texts));
+        assertEquals(1, listEntries().size());
+    }
+
+    @Test
+    public void testBrokenEntry() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        final FakeBufferImpl sample = new FakeBufferImpl("abc".getBytes(StandardCharsets.UTF_8));
+        final ConfigDiff guessed = cache.guessCharset(guess, sample);
+
+        Files.write(listEntries().get(0), "{".getBytes(StandardCharsets.UTF_8));
+        assertEquals(guessed, cache.guessCharset(guess, sample));
+        Files.write(listEntries().get(0), "{}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(guessed, cache.guessCharset(guess, sample));
+        assertEquals(guessed, cache.guessCharset(guess, sample));
+    }
+
+    @Test
+    public void testPutSameKey() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20);
+        cache.put("key", JsonNodeFactory.instance.textNode("a"));
+        cache.put("key", JsonNodeFactory.instance.textNode("abcdefghijklmnopqrstuvwxyz"));
+        cache.put("key", JsonNodeFactory.instance.textNode("ab"));
+
+        assertEquals(1, listEntries().size());
+        assertEquals(Files.size(listEntries().get(0)), cache.getApproximateBytes());
+        assertEquals(cache.getApproximateBytes(), GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1 << 20).getApproximateBytes());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        final GuessCache cache = GuessCache.open(CONFIG_MAPPER_FACTORY, this.directory, 1000);
+        final CharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY);
+        for (int i = 0; i < 100; i++) {
+            cache.guessCharset(guess, new FakeBufferImpl(("sample" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+
+        long totalBytes = 0;
+        for (final Path entry : listEntries()) {
+            totalBytes += Files.size(entry);
+        }
+        assertTrue(totalBytes <= 1000);
+        assertTrue(listEntries().size() > 1);
+    }
+
+    private List<Path> listEntries() throws IOException {
+        final ArrayList<Path> entries = new ArrayList<>();
+        try (final DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+            for (final Path path : stream) {
+                entries.add(path);
+            }
+        }
+        return entries;
+    }
+
+    @TempDir
+    Path directory;
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.text.Newline;
+import org.junit.jupiter.api.Test;
+
+public class TestGuessContext {
+    @Test
+    public void testDetected() {
+        final FakeBufferImpl sample = new FakeBufferImpl("いろはにほへと\r\nちりぬるを\r\n".getBytes(Charset.forName("Shift_JIS")));
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        final GuessContext context = GuessContext.of(CONFIG_MAPPER_FACTORY, config, sample);
+
+        assertEquals("MS932", context.getCharset());
+        assertEquals(Newline.CRLF, context.getPreamble().getNewline());
+        assertEquals(Arrays.asList("いろはにほへと", "ちりぬるを"), context.getLines());
+        assertEquals(LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLines(config, sample), context.getLines());
+        assertEquals(TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toText(config, sample), context.getText());
+        assertEquals("ちりぬるを", context.getLineIndex().getLine(1).toString());
+
+        // Computed only once.
+        assertSame(context.getPreamble(), context.getPreamble());
+        assertSame(context.getLines(), context.getLines());
+        assertSame(context.getLineIndex(), context.getLineIndex());
+        assertSame(context.getText(), context.getText());
+
+        // The config given is not modified.
+        assertFalse(config.getNestedOrGetEmpty("parser").has("charset"));
+    }
+
+    @Test
+    public void testConfigured() {
+        final FakeBufferImpl sample = new FakeBufferImpl("abc\ndef\n".getBytes(StandardCharsets.UTF_8));
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", "windows-1252");
+        parserConfig.set("newline", "LF");
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.setNested("parser", parserConfig);
+        final GuessContext context = GuessContext.of(CONFIG_MAPPER_FACTORY, config, sample);
+
+        assertEquals("windows-1252", context.getCharset());
+        assertEquals(Arrays.asList("abc", "def"), context.getLines());
+        assertEquals("abc\ndef", context.getText());
+    }
+
+    @Test
+    public void testInvalid() {
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", "no-such-charset");
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.setNested("parser", parserConfig);
+        final GuessContext context = GuessContext.of(CONFIG_MAPPER_FACTORY, config, new FakeBufferImpl(new byte[1]));
+
+        assertNull(context.getLines());
+        assertNull(context.getText());
+        assertNull(context.getLines());
+    }
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.embulk.config.ConfigDiff;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.junit.jupiter.api.Test;
+
+public class TestIncrementalCharsetGuess {
+    @Test
+    public void testByteByByte() {
+        final byte[] sample = "いろはにほへとちりぬるを".getBytes(Charset.forName("Shift_JIS"));
+        final IncrementalCharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY).startIncremental();
+        for (int i = 0; i < sample.length; i++) {
+            assertTrue(guess.update(new FakeBufferImpl(new byte[] { sample[i] })));
+        }
+        assertCharset("MS932", guess.finish());
+    }
+
+    @Test
+    public void testCurrentBest() {
+        final IncrementalCharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY).startIncremental();
+        guess.update(new FakeBufferImpl("abc".getBytes(StandardCharsets.UTF_8)));
+        assertCharset("UTF-8", guess.currentBest());
+        guess.update(new FakeBufferImpl("わかよたれそつねらなむ".getBytes(Charset.forName("EUC-JP"))));
+        assertCharset("EUC-JP", guess.currentBest());
+        assertCharset("EUC-JP", guess.finish());
+    }
+
+    @Test
+    public void testBudgetUsedUp() {
+        final byte[] chunk = new byte[40000];
+        Arrays.fill(chunk, (byte) 'a');
+        try (final IncrementalCharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY).startIncremental()) {
+            assertTrue(guess.update(new FakeBufferImpl(chunk)));
+            assertFalse(guess.update(new FakeBufferImpl(chunk)));
+        }
+    }
+
+    @Test
+    public void testFinished() {
+        final IncrementalCharsetGuess guess = CharsetGuess.of(CONFIG_MAPPER_FACTORY).startIncremental();
+        guess.finish();
+        guess.close();
+        assertThrows(IllegalStateException.class, () -> guess.update(new FakeBufferImpl(new byte[1])));
+        assertThrows(IllegalStateException.class, () -> guess.currentBest());
+    }
+
+    private static void assertCharset(final String expectedCharset, final ConfigDiff configDiff) {
+        assertEquals(expectedCharset, configDiff.getNested("parser").get(String.class, "charset"));
+    }
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -17,13 +17,23 @@
 package org.embulk.util.guess;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.embulk.config.ConfigSource;
+import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestLineGuessHelper {
     @Test
@@ -50,8 +60,155 @@ public class TestLineGuessHelper {
         assertLineGuess(Arrays.asList("abc", "def", "ghi"), "abc\r\ndef\r\nghi\r\n".getBytes(StandardCharsets.UTF_8));
     }
 
-    private static void assertLineGuess(final List<String> expectedStrings, final byte[] sample, final String newline) {
+    @Test
+    public void testByteOrderMark() {
+        // The samples do not end with the newline, which toLines compares in bytes, not in code units of UTF-16 and UTF-32.
+        assertLineGuess(Arrays.asList("abc", "def"), "\ufeffabc\r\ndef\r\nghi".getBytes(StandardCharsets.UTF_8), "UTF-8", null);
+        assertLineGuess(Arrays.asList("abc", "def"), "\ufeffabc\r\ndef\r\nghi".getBytes(StandardCharsets.UTF_16LE), "UTF-16", null);
+        assertLineGuess(Arrays.asList("abc", "def"), "\ufeffabc\r\ndef\r\nghi".getBytes(Charset.forName("UTF-32LE")), "UTF-32LE", null);
+
+        // Java keeps the byte order mark as U+FEFF in UTF-16BE and UTF-16LE, which are explicit about the byte order.
+        assertLineGuess(Arrays.asList("\ufeffabc", "def"), "\ufeffabc\r\ndef\r\nghi".getBytes(StandardCharsets.UTF_16LE), "UTF-16LE", null);
+        assertLineGuess(Arrays.asList("\ufeffabc", "def"), "\ufeffabc\r\ndef\r\nghi".getBytes(StandardCharsets.UTF_16BE), "UTF-16BE", null);
+    }
+
+    @Test
+    public void testMultipleBuffers() {
+        final byte[] sample = "id,name\r\n1,いろは\r\n2,abc\r\n".getBytes(StandardCharsets.UTF_8);
+        final ConfigSource config = configWithParser("UTF-8", "CRLF");
+        final List<String> expected = LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLines(config, new FakeBufferImpl(sample));
+        assertEquals(3, expected.size());
+
+        // Split at every position, including in CRLF at the end, and in a multibyte character.
+        for (int split = 0; split <= sample.length; split++) {
+            final List<Buffer> buffers = Arrays.asList(
+                    new FakeBufferImpl(Arrays.copyOfRange(sample, 0, split)),
+                    new FakeBufferImpl(Arrays.copyOfRange(sample, split, sample.length)),
+                    new FakeBufferImpl(new byte[0]));
+            assertEquals(expected, LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLines(config, buffers));
+        }
+    }
+
+    @Test
+    public void testMultipleBuffersGuessingCharsetOverBudget() {
+        // The Japanese lines are after the first 64 KiB, which are sampled in windows.
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append("id,name,comment\r\n");
+        }
+        for (int i = 0; i < 10000; i++) {
+            text.append("1,いろは,にほへと ちりぬるを\r\n");
+        }
+        final byte[] sample = text.toString().getBytes(Charset.forName("Shift_JIS"));
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        final LineGuessHelper helper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+        final List<String> expected = helper.toLines(config, new FakeBufferImpl(sample));
+        assertEquals("1,いろは,にほへと ちりぬるを", expected.get(expected.size() - 1));
+
+        final ArrayList<Buffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < sample.length; offset += 30001) {
+            buffers.add(new FakeBufferImpl(Arrays.copyOfRange(sample, offset, Math.min(offset + 30001, sample.length))));
+        }
+        assertEquals(expected, helper.toLines(config, buffers));
+    }
+
+    @Test
+    public void testLineIndex() {
+        final byte[] sample = "id,name\r\n1,いろは\r\n2,abc\r\n3,".getBytes(Charset.forName("Shift_JIS"));
+        final LineIndex index = LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLineIndex(configWithParser("MS932", "CRLF"), new FakeBufferImpl(sample));
+        assertEquals(3, index.size());
+        assertEquals(0, index.getStart(0));
+        assertEquals(7, index.getEnd(0));
+        assertEquals(9, index.getStart(1));
+
+        final CharSequence header = index.getLine(0);
+        assertEquals(7, header.length());
+        assertEquals(',', header.charAt(2));
+        assertEquals("name", header.subSequence(3, 7).toString());
+        assertEquals("1,いろは", index.getLine(1).toString());
+        assertEquals('い', index.getLine(1).charAt(2));
+        assertEquals("2,abc", index.getLine(2).toString());
+    }
+
+    @Test
+    public void testLineIndexInUtf16() {
+        final byte[] sample = "a\r\n\u0a0d\r\n".getBytes(StandardCharsets.UTF_16LE);
+        final LineIndex index = LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLineIndex(configWithParser("UTF-16LE", "CRLF"), new FakeBufferImpl(sample));
+        assertEquals(2, index.size());
+        assertEquals("a", index.getLine(0).toString());
+        assertEquals("\u0a0d", index.getLine(1).toString());
+    }
+
+    @Test
+    public void testLineIndexInvalid() {
+        assertEquals(null, LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLineIndex(configWithParser("UTF-8", "FOO"), new FakeBufferImpl(new byte[1])));
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final byte[] sample = "いろは\r\nにほへと\r\nちりぬるを".getBytes(Charset.forName("MS932"));
+        final Path file = this.directory.resolve("lines.txt");
+        Files.write(file, sample);
+        final ConfigSource config = configWithParser("MS932", "CRLF");
+        final LineGuessHelper helper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+
+        assertEquals(Arrays.asList("いろは", "にほへと"), helper.toLines(config, file, 4096));
+        assertEquals(helper.toLines(config, new FakeBufferImpl(sample)), helper.toLines(config, file, 4096));
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(Arrays.asList("いろは", "にほへと"), helper.toLines(config, channel, 4096));
+        }
+
+        // The window cuts the second line, which is dropped as a partial line.
+        assertEquals(Arrays.asList("いろは"), helper.toLines(config, file, 10));
+
+        final LineIndex index = helper.toLineIndex(config, file, 4096);
+        assertEquals(2, index.size());
+        assertEquals(8, index.getStart(1));
+        assertEquals("にほへと", index.getLine(1).toString());
+
+        assertEquals(null, helper.toLines(configWithParser("UTF-8", "FOO"), file, 4096));
+    }
+
+    @Test
+    public void testMappedFileWithByteOrderMark() throws IOException {
+        final byte[] sample = "\ufeffいろは\r\nにほへと\r\n".getBytes(StandardCharsets.UTF_16LE);
+        final Path file = this.directory.resolve("utf16.txt");
+        Files.write(file, sample);
+        final ConfigSource config = configWithParser("UTF-16", "CRLF");
+        final LineGuessHelper helper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+
+        assertEquals(Arrays.asList("いろは", "にほへと"), helper.toLines(config, file, 4096));
+        final LineIndex index = helper.toLineIndex(config, file, 4096);
+        assertEquals("いろは", index.getLine(0).toString());
+        assertEquals("にほへと", index.getLine(1).toString());
+    }
+
+    @Test
+    public void testMappedFileGuessingCharset() throws IOException {
+        final byte[] sample = "いろはにほへと\r\nちりぬるを\r\n".getBytes(Charset.forName("Shift_JIS"));
+        final Path file = this.directory.resolve("sjis.txt");
+        Files.write(file, sample);
+
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        final LineGuessHelper helper = LineGuessHelper.of(CONFIG_MAPPER_FACTORY);
+        assertEquals(Arrays.asList("いろはにほへと", "ちりぬるを"), helper.toLines(config, file, 4096));
+        assertEquals(helper.toLines(config, new FakeBufferImpl(sample)), helper.toLines(config, file, 4096));
+    }
+
+    private static ConfigSource configWithParser(final String charset, final String newline) {
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", charset);
+        parserConfig.set("newline", newline);
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.setNested("parser", parserConfig);
+        return config;
+    }
+
+    private static void assertLineGuess(final List<String> expectedStrings, final byte[] sample, final String charset, final String newline) {
         final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        if (charset != null) {
+            parserConfig.set("charset", charset);
+        }
         if (newline != null) {
             parserConfig.set("newline", newline);
         }
@@ -60,10 +217,22 @@ public class TestLineGuessHelper {
 
         assertEquals(expectedStrings,
                      LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLines(config, new FakeBufferImpl(sample)));
+
+        final LineIndex index = LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLineIndex(config, new FakeBufferImpl(sample));
+        final ArrayList<String> indexedStrings = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            assertTrue(index.getLine(i).length() >= 0);
+            indexedStrings.add(index.getLine(i).toString());
+        }
+        assertEquals(expectedStrings, indexedStrings);
+    }
+
+    private static void assertLineGuess(final List<String> expectedStrings, final byte[] sample, final String newline) {
+        assertLineGuess(expectedStrings, sample, null, newline);
     }
 
     private static void assertLineGuess(final List<String> expectedStrings, final byte[] sample) {
-        assertLineGuess(expectedStrings, sample, null);
+        assertLineGuess(expectedStrings, sample, null, null);
     }
 
     private static String repeatedString(final char ch, final int times) {
@@ -74,5 +243,8 @@ public class TestLineGuessHelper {
         return builder.toString();
     }
 
+    @TempDir
+    Path directory;
+
     private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
 }
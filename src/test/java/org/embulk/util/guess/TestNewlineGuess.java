@@ -18,10 +18,21 @@ package org.embulk.util.guess;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
 import org.embulk.config.ConfigDiff;
 import org.embulk.config.ConfigSource;
 import org.embulk.util.config.ConfigMapperFactory;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestNewlineGuess {
     @Test
@@ -31,6 +42,49 @@ public class TestNewlineGuess {
         assertNewline("CR", "UTF-8", ARRAY3);
     }
 
+    @Test
+    public void testOffset() {
+        final byte[] array = new byte[ARRAY1.length + 4];
+        array[0] = (byte) '\n';
+        array[1] = (byte) '\n';
+        System.arraycopy(ARRAY1, 0, array, 2, ARRAY1.length);
+        array[array.length - 2] = (byte) '\n';
+        array[array.length - 1] = (byte) '\n';
+        final FakeBufferImpl buffer = new FakeBufferImpl(array);
+        buffer.offset(2);
+        buffer.limit(ARRAY1.length);
+        assertNewline("CRLF", "UTF-8", buffer);
+    }
+
+    @Test
+    public void testCodeUnits() {
+        // U+0A0D is "0D 0A" in UTF-16LE and "0A 0D" in UTF-16BE, which are not newlines.
+        assertNewline("LF", "UTF-16LE", "\u0a0d\u0a0d\n\u0a0d\u0a0d\n\u0a0d\u0a0d\n".getBytes(Charset.forName("UTF-16LE")));
+        assertNewline("LF", "UTF-16BE", "\u0d0a\u0d0a\n\u0d0a\u0d0a\n\u0d0a\u0d0a\n".getBytes(Charset.forName("UTF-16BE")));
+        assertNewline("CRLF", "UTF-16LE", "a\r\nb\r\n\u0a0a\r\n".getBytes(Charset.forName("UTF-16LE")));
+        assertNewline("CR", "UTF-32LE", "\u0a0a\r\u0a0a\r\u0a0a\r".getBytes(Charset.forName("UTF-32LE")));
+        assertNewline("CRLF", "UTF-32BE", "a\r\nb\r\n".getBytes(Charset.forName("UTF-32BE")));
+    }
+
+    @Test
+    public void testByteOrderMark() {
+        final byte[] bom = { (byte) 0xff, (byte) 0xfe };
+        final byte[] text = "\u0a0d\u0a0d\n\u0a0d\u0a0d\n".getBytes(Charset.forName("UTF-16LE"));
+        final byte[] sample = new byte[bom.length + text.length];
+        System.arraycopy(bom, 0, sample, 0, bom.length);
+        System.arraycopy(text, 0, sample, bom.length, text.length);
+        assertNewline("LF", "UTF-16", sample);
+
+        // Big endian without the byte order mark.
+        assertNewline("CR", "UTF-16", "a\rb\r\u0a0a".getBytes(Charset.forName("UTF-16BE")));
+        assertNewline("CRLF", "UTF-32", "a\r\nb\r\n".getBytes(Charset.forName("UTF-32BE")));
+    }
+
+    @Test
+    public void testUnknownCharset() {
+        assertNewline("CRLF", "no-such-charset", ARRAY1);
+    }
+
     @Test
     public void testCount() {
         assertEquals(2, NewlineGuess.countForTesting(ARRAY1, CRLF));
@@ -38,12 +92,94 @@ public class TestNewlineGuess {
         assertEquals(3, NewlineGuess.countForTesting(ARRAY1, LF));
     }
 
+    @Test
+    public void testCountAcrossWords() {
+        final Random random = new Random(39);
+        final byte[] alphabet = { (byte) 'a', (byte) '\r', (byte) '\n', (byte) 0x8d, (byte) 0x8a };
+        for (int n = 0; n < 1000; n++) {
+            final byte[] array = new byte[random.nextInt(100)];
+            for (int i = 0; i < array.length; i++) {
+                // Mostly 'a' so that many words have no newline.
+                array[i] = random.nextInt(8) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'a';
+            }
+            assertEquals(countNaively(array, CR), NewlineGuess.countForTesting(array, CR));
+            assertEquals(countNaively(array, LF), NewlineGuess.countForTesting(array, LF));
+            assertEquals(countNaively(array, CRLF), NewlineGuess.countForTesting(array, CRLF));
+        }
+    }
+
+    @Test
+    public void testCountInBuffers() {
+        final Random random = new Random(391);
+        final byte[] alphabet = { (byte) 'a', (byte) '\r', (byte) '\n', (byte) 0x8d, (byte) 0x8a };
+        for (int n = 0; n < 1000; n++) {
+            final byte[] array = new byte[random.nextInt(100)];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = random.nextInt(8) == 0 ? alphabet[random.nextInt(alphabet.length)] : (byte) 'a';
+            }
+            final byte[] padded = new byte[array.length + 3];
+            Arrays.fill(padded, (byte) '\n');
+            System.arraycopy(array, 0, padded, 3, array.length);
+            final ByteBuffer sliced = ByteBuffer.wrap(padded, 1, padded.length - 1).slice();  // Backed by the array from the offset 1
+            final ByteBuffer direct = ByteBuffer.allocateDirect(array.length + 2);  // Not backed by an array
+            direct.position(2);
+            direct.put(array);
+
+            for (final ByteBuffer bytes : new ByteBuffer[] { sliced, direct }) {
+                final NewlineGuess.NewlineCounts counts = NewlineGuess.NewlineCounts.count(bytes, 2, array.length, CodeUnits.BYTES, null);
+                assertEquals(countNaively(array, CR), counts.cr);
+                assertEquals(countNaively(array, LF), counts.lf);
+                assertEquals(countNaively(array, CRLF), counts.crlf);
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final Path file = this.directory.resolve("crlf.txt");
+        Files.write(file, "a\r\nb\r\nc\nd".getBytes(StandardCharsets.UTF_16LE));
+
+        final ConfigSource parserConfig = configMapperFactory.newConfigSource();
+        parserConfig.set("charset", "UTF-16LE");
+        final ConfigSource config = configMapperFactory.newConfigSource();
+        config.setNested("parser", parserConfig);
+
+        final NewlineGuess guess = NewlineGuess.of(configMapperFactory);
+        assertEquals("CRLF", guess.guess(config, file, 4096).getNested("parser").get(String.class, "newline"));
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals("CRLF", guess.guess(config, channel, 4096).getNested("parser").get(String.class, "newline"));
+        }
+        // Only "a\r" in the window.
+        assertEquals("CR", guess.guess(config, file, 4).getNested("parser").get(String.class, "newline"));
+
+        // A character set is guessed without parser.charset.
+        final ConfigDiff charsetGuessed = guess.guess(configMapperFactory.newConfigSource(), file, 4096);
+        assertEquals(CharsetGuess.of(configMapperFactory).guess(file, 4096), charsetGuessed);
+    }
+
+    private static int countNaively(final byte[] array, final byte[] target) {
+        int count = 0;
+        outer: for (int i = 0; i < array.length - target.length + 1; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
     private static void assertNewline(final String expectedNewline, final String charset, final byte[] sample) {
+        assertNewline(expectedNewline, charset, new FakeBufferImpl(sample));
+    }
+
+    private static void assertNewline(final String expectedNewline, final String charset, final FakeBufferImpl sample) {
         final ConfigSource parserConfig = configMapperFactory.newConfigSource();
         parserConfig.set("charset", charset);
         final ConfigSource config = configMapperFactory.newConfigSource();
         config.setNested("parser", parserConfig);
-        final ConfigDiff configDiff = NewlineGuess.of(configMapperFactory).guess(config, new FakeBufferImpl(sample));
+        final ConfigDiff configDiff = NewlineGuess.of(configMapperFactory).guess(config, sample);
         assertEquals(expectedNewline, configDiff.getNested("parser").get(String.class, "newline"));
     }
 
@@ -87,5 +223,8 @@ public class TestNewlineGuess {
     private static final byte[] CR = { (byte) '\r' };
     private static final byte[] LF = { (byte) '\n' };
 
+    @TempDir
+    Path directory;
+
     private static final ConfigMapperFactory configMapperFactory = ConfigMapperFactory.withDefault();
 }
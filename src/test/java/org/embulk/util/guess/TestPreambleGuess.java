@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.embulk.config.ConfigSource;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.text.Newline;
+import org.junit.jupiter.api.Test;
+
+public class TestPreambleGuess {
+    @Test
+    public void testGuessAll() {
+        final Charset shiftJis = Charset.forName("Shift_JIS");
+        final byte[] bytes = "いろはにほへと\r\nちりぬるを\r\nわかよたれそ".getBytes(shiftJis);
+        final FakeBufferImpl sample = new FakeBufferImpl(bytes);
+        final Preamble preamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(CONFIG_MAPPER_FACTORY.newConfigSource(), sample);
+
+        assertEquals("MS932", preamble.getCharset());
+        assertEquals(Newline.CRLF, preamble.getNewline());
+        assertFalse(preamble.hasByteOrderMark());
+        assertEquals(Arrays.asList("いろはにほへと", "ちりぬるを"), linesOf(preamble));
+
+        // The same as guessing the charset, and then the newline with the charset.
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.merge(CharsetGuess.of(CONFIG_MAPPER_FACTORY).guess(sample));
+        config.merge(NewlineGuess.of(CONFIG_MAPPER_FACTORY).guess(config, sample));
+        assertEquals(config.getNested("parser").get(String.class, "charset"), preamble.getCharset());
+        assertEquals(config.getNested("parser").get(String.class, "newline"), preamble.getNewline().name());
+        assertEquals("MS932", preamble.toConfigDiff().getNested("parser").get(String.class, "charset"));
+        assertEquals("CRLF", preamble.toConfigDiff().getNested("parser").get(String.class, "newline"));
+    }
+
+    @Test
+    public void testSameAsToLines() {
+        final byte[] bytes = "a,b\n\nc,d\re,f\r\ng,h\n".getBytes(StandardCharsets.UTF_8);
+        final Preamble preamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", null, null), new FakeBufferImpl(bytes));
+
+        assertEquals(Newline.LF, preamble.getNewline());
+        assertEquals(LineGuessHelper.of(CONFIG_MAPPER_FACTORY).toLines(configWithParser("UTF-8", "LF", null), new FakeBufferImpl(bytes)),
+                     linesOf(preamble));
+        assertEquals(Arrays.asList("a,b", "", "c,d", "e,f", "g,h"), linesOf(preamble));
+    }
+
+    @Test
+    public void testPartialLastLine() {
+        final byte[] bytes = "a\nb\nc".getBytes(StandardCharsets.UTF_8);
+        final Preamble preamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", null, null), new FakeBufferImpl(bytes));
+        assertEquals(Arrays.asList("a", "b"), linesOf(preamble));
+
+        // CR at the end may be a part of CRLF cut off.
+        final byte[] cut = "a\r\nb\r\nc\r".getBytes(StandardCharsets.UTF_8);
+        final Preamble cutPreamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", null, null), new FakeBufferImpl(cut));
+        assertEquals(Newline.CRLF, cutPreamble.getNewline());
+        assertEquals(Arrays.asList("a", "b"), linesOf(cutPreamble));
+    }
+
+    @Test
+    public void testLineDelimiterRecognized() {
+        final byte[] bytes = "a\r\nb\rc\n".getBytes(StandardCharsets.UTF_8);
+        final Preamble lf = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", "LF", "LF"), new FakeBufferImpl(bytes));
+        assertEquals(Arrays.asList("a\r", "b\rc"), linesOf(lf));
+
+        final byte[] crlfBytes = "a\rb\r\nc\nd\r\n".getBytes(StandardCharsets.UTF_8);
+        final Preamble crlf = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", "CRLF", "CRLF"), new FakeBufferImpl(crlfBytes));
+        assertEquals(Arrays.asList("a\rb", "c\nd"), linesOf(crlf));
+    }
+
+    @Test
+    public void testByteOrderMark() {
+        final byte[] utf8 = "\ufeffa\nb\n".getBytes(StandardCharsets.UTF_8);
+        final Preamble utf8Preamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", null, null), new FakeBufferImpl(utf8));
+        assertTrue(utf8Preamble.hasByteOrderMark());
+        assertEquals(3, utf8Preamble.getLineIndex().getStart(0));
+        assertEquals(Arrays.asList("a", "b"), linesOf(utf8Preamble));
+
+        final byte[] utf16 = "\ufeff\u0a0d\r\nb\r\n".getBytes(StandardCharsets.UTF_16LE);
+        final Preamble utf16Preamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-16", null, null), new FakeBufferImpl(utf16));
+        assertTrue(utf16Preamble.hasByteOrderMark());
+        assertEquals(Newline.CRLF, utf16Preamble.getNewline());
+        assertEquals(Arrays.asList("\u0a0d", "b"), linesOf(utf16Preamble));
+
+        // Each line is decoded without the byte order mark, but still in little endian.
+        final byte[] utf16Lines = "\ufeffab\r\n\ufeffcd\r\n".getBytes(StandardCharsets.UTF_16LE);
+        final Preamble utf16LinesPreamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-16", null, null), new FakeBufferImpl(utf16Lines));
+        assertEquals(Arrays.asList("ab", "\ufeffcd"), linesOf(utf16LinesPreamble));
+
+        final byte[] utf32 = "\ufeffab\ncd\n".getBytes(Charset.forName("UTF-32LE"));
+        final Preamble utf32Preamble = PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-32", null, null), new FakeBufferImpl(utf32));
+        assertTrue(utf32Preamble.hasByteOrderMark());
+        assertEquals(Arrays.asList("ab", "cd"), linesOf(utf32Preamble));
+    }
+
+    @Test
+    public void testInvalidNewline() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            PreambleGuess.of(CONFIG_MAPPER_FACTORY).guess(configWithParser("UTF-8", "FOO", null), new FakeBufferImpl(new byte[1]));
+        });
+    }
+
+    private static List<String> linesOf(final Preamble preamble) {
+        final LineIndex index = preamble.getLineIndex();
+        final ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            lines.add(index.getLine(i).toString());
+        }
+        return lines;
+    }
+
+    private static ConfigSource configWithParser(final String charset, final String newline, final String lineDelimiterRecognized) {
+        final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        parserConfig.set("charset", charset);
+        if (newline != null) {
+            parserConfig.set("newline", newline);
+        }
+        if (lineDelimiterRecognized != null) {
+            parserConfig.set("line_delimiter_recognized", lineDelimiterRecognized);
+        }
+        final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
+        config.setNested("parser", parserConfig);
+        return config;
+    }
+
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.withDefault();
+}
@@ -18,9 +18,17 @@ package org.embulk.util.guess;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import org.embulk.config.ConfigSource;
+import org.embulk.spi.Buffer;
 import org.embulk.util.config.ConfigMapperFactory;
 import org.junit.jupiter.api.Test;
 
@@ -48,15 +56,73 @@ public class TestTextGuessHelper {
                         "CR");
     }
 
+    @Test
+    public void testMultipleBuffers() {
+        final byte[] sample = "いろはにほへと\nちりぬるを\nわかよたれそ".getBytes(Charset.forName("EUC-JP"));
+        final ConfigSource config = configWithParser(null, "LF", null);
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < sample.length; i += 5) {
+            buffers.add(new FakeBufferImpl(Arrays.copyOfRange(sample, i, Math.min(i + 5, sample.length))));
+        }
+        assertEquals("いろはにほへと\nちりぬるを\nわかよたれそ", TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toText(config, buffers));
+    }
+
+    @Test
+    public void testReaderSameAsText() {
+        final Random random = new Random(43);
+        final String[] pieces = { "a", "い", "\r", "\n", "\r\n" };
+        final String[] lineDelimiters = { null, "CR", "LF", "CRLF" };
+        for (int n = 0; n < 1000; n++) {
+            final StringBuilder text = new StringBuilder();
+            if (n % 10 == 0) {
+                text.append('\ufeff');  // The byte order mark, which is never in the random pieces.
+            }
+            final int length = random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            final byte[] sample = text.toString().getBytes(StandardCharsets.UTF_8);
+            final ConfigSource config = configWithParser("UTF-8", "CRLF", lineDelimiters[random.nextInt(lineDelimiters.length)]);
+            assertEquals(TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toText(config, new FakeBufferImpl(sample)),
+                         readFully(TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toReader(config, new FakeBufferImpl(sample)), 1 + random.nextInt(5)));
+        }
+    }
+
     private static void assertTextGuess(final String expectedString, final byte[] sample, final String newline) {
+        final ConfigSource config = configWithParser(null, newline, null);
+
+        assertEquals(expectedString, TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toText(config, new FakeBufferImpl(sample)));
+        assertEquals(expectedString, readFully(TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toReader(config, new FakeBufferImpl(sample)), 3));
+    }
+
+    private static ConfigSource configWithParser(final String charset, final String newline, final String lineDelimiterRecognized) {
         final ConfigSource parserConfig = CONFIG_MAPPER_FACTORY.newConfigSource();
+        if (charset != null) {
+            parserConfig.set("charset", charset);
+        }
         if (newline != null) {
             parserConfig.set("newline", newline);
         }
+        if (lineDelimiterRecognized != null) {
+            parserConfig.set("line_delimiter_recognized", lineDelimiterRecognized);
+        }
         final ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource();
         config.setNested("parser", parserConfig);
+        return config;
+    }
 
-        assertEquals(expectedString, TextGuessHelper.of(CONFIG_MAPPER_FACTORY).toText(config, new FakeBufferImpl(sample)));
+    private static String readFully(final Reader reader, final int chunkSize) {
+        final StringBuilder builder = new StringBuilder();
+        final char[] chunk = new char[chunkSize];
+        try (final Reader closed = reader) {
+            int read;
+            while ((read = closed.read(chunk, 0, chunk.length)) >= 0) {
+                builder.append(chunk, 0, read);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return builder.toString();
     }
 
     private static void assertTextGuess(final String expectedString, final byte[] sample) {
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.embulk.util.guess.reference;
+
+/**
+ * Detects character sets with the frozen copy of ICU4J's {@code CharsetDetector}, which is package-private.
+ *
+ * <p>A match is described in a string as {@code "name:confidence:language"} to be compared with the optimized one.
+ */
+public final class CharsetDetection {
+    private CharsetDetection() {
+        // No instantiation.
+    }
+
+    /**
+     * Detects all the matches in the order of their confidences, as {@code CharsetDetector#detectAll} does.
+     *
+     * @param input  the bytes to be detected
+     * @param withIbm  {@code true} to enable also the recognizers of IBM424 and IBM420, which are disabled by default
+     * @return the matches described
+     */
+    @SuppressWarnings("deprecation")
+    public static String[] detectAll(final byte[] input, final boolean withIbm) {
+        final CharsetDetector detector = new CharsetDetector();
+        if (withIbm) {
+            for (final String charset : IBM_CHARSETS) {
+                detector.setDetectableCharset(charset, true);
+            }
+        }
+        detector.setText(input);
+        final CharsetMatch[] matches = detector.detectAll();
+        final String[] described = new String[matches.length];
+        for (int i = 0; i < matches.length; i++) {
+            described[i] = describe(matches[i].getName(), matches[i].getConfidence(), matches[i].getLanguage());
+        }
+        return described;
+    }
+
+    /**
+     * Detects the best match, as {@code CharsetDetector#detect} does.
+     *
+     * @param input  the bytes to be detected
+     * @return the match described, or {@code null} if nothing matches
+     */
+    public static String detect(final byte[] input) {
+        final CharsetMatch match = new CharsetDetector().setText(input).detect();
+        return match == null ? null : describe(match.getName(), match.getConfidence(), match.getLanguage());
+    }
+
+    /**
+     * Describes a match in the same way for both the reference and the optimized one.
+     *
+     * @param name  the name of the character set
+     * @param confidence  the confidence
+     * @param language  the language, or {@code null}
+     * @return the match described
+     */
+    public static String describe(final String name, final int confidence, final String language) {
+        return name + ":" + confidence + ":" + language;
+    }
+
+    /**
+     * The names of the recognizers disabled by default, which can be enabled through {@code setDetectableCharset}.
+     */
+    public static final String[] IBM_CHARSETS = { "IBM424_rtl", "IBM424_ltr", "IBM420_rtl", "IBM420_ltr" };
+}
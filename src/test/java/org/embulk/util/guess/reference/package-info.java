@@ -0,0 +1,25 @@
+/*
+ * Copyright 2026 The Embulk project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Frozen copies of the straightforward implementations of the guessers, as the reference for differential tests.
+ *
+ * <p>The character set detection is the copy of ICU4J before it was optimized. {@code SchemaGuess},
+ * {@code TimeFormatGuess}, and the pickers in {@code timeformat} are the copies of the regular-expression based
+ * implementations. They must not be optimized nor fixed along with the main ones. {@code TestDifferential} checks
+ * that the main ones return identical results to them.
+ */
+package org.embulk.util.guess.reference;